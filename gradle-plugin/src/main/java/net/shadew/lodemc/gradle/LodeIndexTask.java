@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import net.shadew.lodemc.loader.impl.index.AnnotationIndex;
+import net.shadew.lodemc.loader.impl.index.AnnotationIndexer;
+import net.shadew.lodemc.loader.impl.index.ClassFilesHash;
+
+/**
+ * Writes the annotation index of a set of class directories to {@link AnnotationIndex#EMBEDDED_PATH}, relative to the
+ * output directory. The index is tied to the classes by their {@link ClassFilesHash}, so the loader ignores it when the
+ * jar ends up with other classes than were indexed.
+ */
+public abstract class LodeIndexTask extends DefaultTask {
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getClasses();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @TaskAction
+    public void generate() throws IOException {
+        // Like in a jar, the first class directory that has a class wins
+        Map<String, Path> classFiles = new TreeMap<>();
+        for (File dir : getClasses().getFiles()) {
+            Path root = dir.toPath();
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.filter(path -> path.getFileName().toString().endsWith(".class"))
+                     .forEach(path -> classFiles.putIfAbsent(root.relativize(path).toString().replace('\\', '/'), path));
+            } catch (UncheckedIOException exc) {
+                throw exc.getCause();
+            }
+        }
+
+        AnnotationIndexer indexer = new AnnotationIndexer();
+        ClassFilesHash hash = new ClassFilesHash();
+        CRC32 crc = new CRC32();
+        for (Map.Entry<String, Path> entry : classFiles.entrySet()) {
+            byte[] bytes = Files.readAllBytes(entry.getValue());
+            crc.reset();
+            crc.update(bytes);
+            hash.add(entry.getKey(), bytes.length, crc.getValue());
+            indexer.indexClass(entry.getKey(), bytes);
+        }
+
+        Path out = getOutputDirectory().get().getAsFile().toPath().resolve(AnnotationIndex.EMBEDDED_PATH);
+        Files.createDirectories(out.getParent());
+        Files.write(out, indexer.build(hash.finish()).toByteArray());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginConvention;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.bundling.Jar;
+
+/**
+ * Adds a {@code lodeIndex} task to Java projects, which indexes the annotations of the main classes so that the
+ * loader doesn't have to scan the mod jar. The index is packed into the jar.
+ */
+public class LodePlugin implements Plugin<Project> {
+    @Override
+    public void apply(Project project) {
+        project.getPlugins().withType(JavaPlugin.class, java -> {
+            SourceSet main = project.getConvention()
+                                    .getPlugin(JavaPluginConvention.class)
+                                    .getSourceSets()
+                                    .getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+
+            TaskProvider<LodeIndexTask> index = project.getTasks().register("lodeIndex", LodeIndexTask.class, task -> {
+                task.setGroup("build");
+                task.setDescription("Indexes the annotations of the main classes for Lode.");
+                task.getClasses().from(main.getOutput().getClassesDirs());
+                task.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("lode/index"));
+            });
+
+            project.getTasks().named(JavaPlugin.JAR_TASK_NAME, Jar.class, jar -> jar.from(index));
+        });
+    }
+}
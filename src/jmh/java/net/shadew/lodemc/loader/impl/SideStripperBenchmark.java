@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.shadew.lodemc.loader.api.Environment;
+import net.shadew.lodemc.loader.impl.transformers.SideStripper;
+
+/**
+ * Compares running SideStripper over all classes of a jar with and without its constant pool prefilter. The jar
+ * defaults to the vanilla Minecraft jar on the class path, and can be changed with {@code -p jar=<path>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SideStripperBenchmark {
+    @Param("")
+    public String jar;
+
+    private final SideStripper stripper = new SideStripper(Environment.CLIENT);
+    private final List<String> names = new ArrayList<>();
+    private final List<byte[]> classes = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        String path = jar.isEmpty() ? findJar("net/minecraft/client/main/Main.class", "org/objectweb/asm/ClassReader.class") : jar;
+        try (ZipFile zip = new ZipFile(path)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".class")) {
+                    names.add(entry.getName().substring(0, entry.getName().length() - 6));
+                    classes.add(readAll(zip.getInputStream(entry)));
+                }
+            }
+        }
+        System.out.println("Benchmarking " + classes.size() + " classes of " + path);
+    }
+
+    /**
+     * What SideStripper did before the prefilter: every class is parsed, checked and written again.
+     */
+    @Benchmark
+    public void withoutPrefilter(Blackhole blackhole) {
+        for (int i = 0, l = classes.size(); i < l; i++) {
+            blackhole.consume(strip(names.get(i), classes.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void withPrefilter(Blackhole blackhole) {
+        for (int i = 0, l = classes.size(); i < l; i++) {
+            byte[] cls = classes.get(i);
+            blackhole.consume(stripper.canTransform(names.get(i), cls) ? strip(names.get(i), cls) : cls);
+        }
+    }
+
+    private byte[] strip(String name, byte[] cls) {
+        ClassReader reader = new ClassReader(cls);
+        ClassNode node = new ClassNode();
+        reader.accept(node, 0);
+        stripper.transformClassNode(name, node);
+
+        ClassWriter writer = new ClassWriter(reader, 0);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static String findJar(String... resources) throws IOException {
+        for (String resource : resources) {
+            URL url = SideStripperBenchmark.class.getClassLoader().getResource(resource);
+            if (url != null && url.getProtocol().equals("jar")) {
+                try {
+                    return Paths.get(((JarURLConnection) url.openConnection()).getJarFileURL().toURI()).toString();
+                } catch (URISyntaxException exc) {
+                    throw new IOException(exc);
+                }
+            }
+        }
+        throw new IOException("No jar to benchmark on the class path, specify one with -p jar=<path>");
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = stream.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
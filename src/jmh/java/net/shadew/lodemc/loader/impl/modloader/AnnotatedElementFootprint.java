@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.shadew.lodemc.loader.impl.index.AnnotationIndex;
+import net.shadew.lodemc.loader.impl.index.AnnotationIndexer;
+import net.shadew.lodemc.loader.impl.index.IndexedElement;
+
+/**
+ * Measures how much heap the annotated elements of the given jars retain, compared to keeping their annotations as
+ * parsed trees. Run it with {@code gradle elementFootprint -PfootprintJars="a.jar b.jar"}.
+ */
+public class AnnotatedElementFootprint {
+    public static void main(String[] args) throws IOException {
+        AnnotationIndexer indexer = new AnnotationIndexer();
+        for (String jar : args) {
+            try (ZipFile zip = new ZipFile(jar)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        indexer.indexClass(entry.getName(), readAll(zip.getInputStream(entry)));
+                    }
+                }
+            }
+        }
+        byte[] index = indexer.build("").toByteArray();
+        indexer = null;
+
+        long base = usedHeap();
+        List<IndexedElement> trees = AnnotationIndex.read(index).getElements();
+        long treeHeap = usedHeap() - base;
+
+        ElementPool pool = new ElementPool();
+        List<AnnotatedElementImpl> elements = new ArrayList<>(trees.size());
+        for (IndexedElement element : trees) {
+            elements.add(AnnotatedElementImpl.fromIndex(element, null, pool));
+        }
+        int count = trees.size();
+        trees = null;
+        pool.strings().freeze();
+        pool = null;
+        long elementHeap = usedHeap() - base;
+
+        // Values are kept once they're asked for
+        elements.forEach(AnnotatedElementImpl::getAnnotationValues);
+        long unpackedHeap = usedHeap() - base;
+
+        System.out.println(count + " annotated elements");
+        print("As trees", treeHeap, count);
+        print("As elements", elementHeap, count);
+        print("As elements, all values unpacked", unpackedHeap, count);
+
+        // Keep the elements reachable until they're measured
+        System.out.println(elements.size() == count ? "" : "?");
+    }
+
+    private static void print(String what, long heap, int count) {
+        System.out.println(what + ": " + heap / 1024 + " KiB, " + heap / Math.max(1, count) + " bytes per element");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = stream.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -16,12 +16,18 @@
 
 package net.shadew.lodemc.loader.api;
 
+import org.objectweb.asm.Type;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
 import java.nio.file.Path;
 import java.util.List;
 
+import net.shadew.lodemc.loader.api.mod.AnnotatedElement;
 import net.shadew.lodemc.loader.api.mod.Mod;
 import net.shadew.lodemc.loader.api.transformer.ClassPath;
 import net.shadew.lodemc.loader.api.transformer.Transformer;
+import net.shadew.lodemc.loader.api.transformer.TreeTransformer;
 import net.shadew.lodemc.loader.impl.LodeLoaderImpl;
 
 public interface LodeLoader {
@@ -32,8 +38,47 @@ public interface LodeLoader {
     Mod getModById(String id);
     boolean isModLoaded(String id);
 
+    /**
+     * Returns the elements of all mods with the given annotation, in mod order. Only available once mods are scanned,
+     * and only for annotations declared with {@link #declareAnnotation}.
+     *
+     * @throws RuntimeException When the annotation was not declared
+     */
+    List<AnnotatedElement> getAnnotatedElements(Type annotationType);
+
+    default List<AnnotatedElement> getAnnotatedElements(Class<? extends Annotation> type) {
+        return getAnnotatedElements(Type.getType(type));
+    }
+
+    /**
+     * Returns the elements of all mods with the given annotation that are of the given type, e.g. only methods.
+     */
+    List<AnnotatedElement> getAnnotatedElements(Type annotationType, ElementType elementType);
+
+    /**
+     * Returns the elements in the given class with a declared annotation, including the class itself.
+     */
+    List<AnnotatedElement> getAnnotatedElementsIn(Type containerType);
+
+    /**
+     * Calls the entrypoints that are deferred until the given event, if they weren't called already.
+     */
+    void triggerEntrypoints(String event);
+
     void installClassPath(ClassPath classPath);
     void installTransformer(Transformer transformer);
+    void installTransformer(TreeTransformer transformer);
+
+    /**
+     * Declares that the given annotation will be looked up with {@link Mod#getAnnotatedElements}. Mods are only scanned
+     * for declared annotations and the loader's own, other annotations are never found. Plugins must declare their
+     * annotations while they're initialized.
+     */
+    void declareAnnotation(Type annotationType);
+
+    default void declareAnnotation(Class<? extends Annotation> type) {
+        declareAnnotation(Type.getType(type));
+    }
 
     static LodeLoader getInstance() {
         return LodeLoaderImpl.instance;
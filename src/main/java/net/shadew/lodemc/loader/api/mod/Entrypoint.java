@@ -22,10 +22,34 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import net.shadew.lodemc.loader.api.Environment;
+import net.shadew.lodemc.loader.api.LodeLoader;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD, ElementType.TYPE})
 public @interface Entrypoint {
+    /**
+     * The mods this entrypoint needs. It's only called when all of them are loaded, and only after all their
+     * entrypoints have been called.
+     */
     String[] requires() default {};
     Environment[] env() default {Environment.CLIENT, Environment.SERVER};
+
+    /**
+     * Whether this entrypoint must be called on the main thread. Other entrypoints are called on worker threads, in
+     * parallel with the entrypoints of mods they don't depend on. Entrypoints of the same mod are always called one
+     * after another, in the order they appear in.
+     */
+    boolean mainThread() default false;
+
+    /**
+     * Defers this entrypoint until one of these classes is initialized. It's then called right after the static
+     * initializer of that class, on the thread that initialized it.
+     */
+    Class<?>[] triggerClasses() default {};
+
+    /**
+     * Defers this entrypoint until one of these events is triggered with {@link LodeLoader#triggerEntrypoints}. It's
+     * then called on the thread that triggered the event.
+     */
+    String[] triggerEvents() default {};
 }
@@ -22,6 +22,8 @@ import java.lang.annotation.Annotation;
 import java.nio.file.Path;
 import java.util.List;
 
+import net.shadew.lodemc.loader.api.LodeLoader;
+
 public interface Mod {
     String getId();
 
@@ -30,11 +32,20 @@ public interface Mod {
     Path getPath(String path);
     Path getRootPath();
 
+    /**
+     * Returns the elements of this mod with the given annotation. Mods are only scanned for annotations declared with
+     * {@link LodeLoader#declareAnnotation}, so only declared annotations can be looked up.
+     *
+     * @throws RuntimeException When the annotation was not declared
+     */
     List<AnnotatedElement> getAnnotatedElements(Type annotationType);
 
     default List<AnnotatedElement> getAnnotatedElements(Class<? extends Annotation> type) {
         return getAnnotatedElements(Type.getType(type));
     }
 
+    /**
+     * Returns the elements of this mod with any declared annotation, elements with other annotations are not included.
+     */
     List<AnnotatedElement> getAnnotatedElements();
 }
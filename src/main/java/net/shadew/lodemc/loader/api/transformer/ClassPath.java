@@ -25,6 +25,15 @@ import net.shadew.util.misc.IO;
 public interface ClassPath {
     Iterable<URL> findSources(String path);
 
+    /**
+     * Lists the paths of all files this class path can provide, relative to its root and separated by slashes. This is
+     * used to index class paths once they are frozen. Returns null when this class path can't enumerate its contents,
+     * in which case it will be probed for every lookup instead.
+     */
+    default Iterable<String> listFiles() {
+        return null;
+    }
+
     default byte[] loadClassBytes(String className) throws ClassNotFoundException {
         URL resource = null;
         Iterable<URL> sources = findSources(className + ".class");
@@ -16,8 +16,38 @@
 
 package net.shadew.lodemc.loader.api.transformer;
 
+/**
+ * Transforms the bytes of classes as they are loaded by the game class loader.
+ * <p>
+ * Classes are loaded by multiple threads at the same time, so a transformer is called concurrently, for different
+ * classes, and must be thread safe. Shared state, such as caches or counters, must be synchronized or held in
+ * concurrent data structures.
+ */
 public interface Transformer {
     boolean canTransform(String className);
 
+    /**
+     * The classes this transformer may transform. Classes outside these targets are never offered to this
+     * transformer once transformers are frozen.
+     */
+    default TransformerTargets getTargets() {
+        return TransformerTargets.all();
+    }
+
+    /**
+     * Describes everything other than the class itself that the output of this transformer depends on, such as the
+     * contents of config files or the values of system properties. Transformed classes are cached on disk, and the cache
+     * is only discarded when the cache key of a transformer or the code of the game, loader, plugins or mods changes.
+     * Transformers whose output depends on nothing but the class return an empty string. The default, null, means the
+     * output can't be cached, and disables the transformation cache as long as this transformer is installed.
+     */
+    default String getCacheKey() {
+        return null;
+    }
+
+    /**
+     * Transforms the given class, returning null to remove the class. A transformer that doesn't change the class
+     * should return the given array as is, and must never modify the given array in place.
+     */
     byte[] transformClassBytes(String className, byte[] bytes);
 }
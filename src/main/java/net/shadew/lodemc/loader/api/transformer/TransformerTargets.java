@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.api.transformer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The classes a transformer wants to see, by internal name (e.g. {@code net/minecraft/client/Minecraft}). When
+ * transformers are frozen, the loader compiles the targets of all transformers into a lookup table so that loading a
+ * class only involves the transformers that target it. These are still asked {@code canTransform} as usual.
+ */
+public final class TransformerTargets {
+    private static final TransformerTargets ALL = new TransformerTargets(true, Collections.emptySet(), Collections.emptySet());
+
+    private final boolean all;
+    private final Set<String> classes;
+    private final Set<String> packages;
+
+    private TransformerTargets(boolean all, Set<String> classes, Set<String> packages) {
+        this.all = all;
+        this.classes = classes;
+        this.packages = packages;
+    }
+
+    public boolean isAll() {
+        return all;
+    }
+
+    public Set<String> getClasses() {
+        return classes;
+    }
+
+    public Set<String> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Targets the given classes and packages too.
+     */
+    public TransformerTargets and(TransformerTargets other) {
+        if (all || other.all) {
+            return ALL;
+        }
+
+        Set<String> classes = new LinkedHashSet<>(this.classes);
+        classes.addAll(other.classes);
+        Set<String> packages = new LinkedHashSet<>(this.packages);
+        packages.addAll(other.packages);
+        return new TransformerTargets(false, Collections.unmodifiableSet(classes), Collections.unmodifiableSet(packages));
+    }
+
+    /**
+     * Targets every class.
+     */
+    public static TransformerTargets all() {
+        return ALL;
+    }
+
+    /**
+     * Targets exactly the given classes.
+     */
+    public static TransformerTargets classes(String... internalNames) {
+        return new TransformerTargets(
+            false,
+            Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(internalNames))),
+            Collections.emptySet()
+        );
+    }
+
+    /**
+     * Targets all classes in the given packages and their subpackages, e.g. {@code net/minecraft/client}.
+     */
+    public static TransformerTargets packages(String... internalNames) {
+        return new TransformerTargets(
+            false,
+            Collections.emptySet(),
+            Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(internalNames)))
+        );
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.api.transformer;
+
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A transformer that works on a parsed {@link ClassNode} rather than on class bytes. The loader parses a class once,
+ * hands the same node to all tree transformers in order, and serializes it once when they're done. Byte based
+ * {@link Transformer}s in between are given the serialized bytes.
+ * <p>
+ * The node is serialized without computing frames or maximum stack sizes, so a transformer that changes code must keep
+ * these valid itself.
+ * <p>
+ * Like {@link Transformer}s, tree transformers are called concurrently for different classes and must be thread safe.
+ * Each node is only handed to one thread at a time.
+ */
+public interface TreeTransformer {
+    boolean canTransform(String className);
+
+    /**
+     * The classes this transformer may transform, see {@link Transformer#getTargets()}.
+     */
+    default TransformerTargets getTargets() {
+        return TransformerTargets.all();
+    }
+
+    /**
+     * Checks the raw class file before it is parsed, so classes this transformer won't touch don't have to be parsed at
+     * all. This is only called when the class is still available as unmodified bytes.
+     */
+    default boolean canTransform(String className, byte[] classFile) {
+        return true;
+    }
+
+    /**
+     * Describes everything other than the class itself that the output of this transformer depends on, see
+     * {@link Transformer#getCacheKey()}.
+     */
+    default String getCacheKey() {
+        return null;
+    }
+
+    Result transformClassNode(String className, ClassNode node);
+
+    enum Result {
+        /**
+         * The node was modified and must be serialized again.
+         */
+        MODIFIED,
+
+        /**
+         * The node was left untouched.
+         */
+        UNCHANGED,
+
+        /**
+         * The class must not be loaded at all.
+         */
+        REMOVED
+    }
+}
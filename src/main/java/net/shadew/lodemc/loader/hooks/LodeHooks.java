@@ -17,11 +17,16 @@
 package net.shadew.lodemc.loader.hooks;
 
 import net.shadew.lodemc.loader.impl.LodeLoaderImpl;
+import net.shadew.lodemc.loader.impl.modloader.EntrypointScheduler;
 
 public class LodeHooks {
     public static void init() {
         System.out.println("Lode initializing");
-        LodeLoaderImpl.instance.getNonAPIMods().forEach(mod -> mod.runEntrypoints(LodeLoaderImpl.instance));
+        new EntrypointScheduler(LodeLoaderImpl.instance.getNonAPIMods()).run();
+    }
+
+    public static void triggerClass(String internalName) {
+        LodeLoaderImpl.instance.getDeferredEntrypoints().triggerClass(internalName);
     }
 
     public static void loadClass(Class<?> cls) {
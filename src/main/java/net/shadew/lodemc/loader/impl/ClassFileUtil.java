@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans raw class files without parsing them into a tree, or allocating anything at all.
+ */
+public class ClassFileUtil {
+    /**
+     * Encodes a string for use with {@link #containsUtf8}. Only supports ASCII strings, which is all we need for type
+     * descriptors and attribute names.
+     */
+    public static byte[] utf8(String str) {
+        return str.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Checks whether the constant pool of the given class file contains any of the given UTF8 constants. Returns true
+     * when the class file is malformed or uses constants we don't know, so that the class gets parsed properly.
+     */
+    public static boolean containsUtf8(byte[] cls, byte[]... values) {
+        if (cls.length < 10) {
+            return true;
+        }
+
+        int count = readU2(cls, 8);
+        int off = 10;
+        for (int i = 1; i < count; i++) {
+            if (off >= cls.length) {
+                return true;
+            }
+
+            switch (cls[off]) {
+                case 1: // Utf8
+                    if (off + 3 > cls.length) return true;
+                    int len = readU2(cls, off + 1);
+                    if (off + 3 + len > cls.length) return true;
+                    for (byte[] value : values) {
+                        if (value.length == len && regionMatches(cls, off + 3, value)) {
+                            return true;
+                        }
+                    }
+                    off += 3 + len;
+                    break;
+                case 3:  // Integer
+                case 4:  // Float
+                case 9:  // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    off += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    off += 9;
+                    i++; // Takes two slots
+                    break;
+                case 7:  // Class
+                case 8:  // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    off += 3;
+                    break;
+                case 15: // MethodHandle
+                    off += 4;
+                    break;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static int readU2(byte[] bytes, int off) {
+        return (bytes[off] & 0xFF) << 8 | bytes[off + 1] & 0xFF;
+    }
+
+    private static boolean regionMatches(byte[] bytes, int off, byte[] value) {
+        for (int i = 0; i < value.length; i++) {
+            if (bytes[off + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The worker pool that loader phases use to spread their work over multiple threads. Its size can be set with the
+ * {@code lode.threads} system property and defaults to the amount of available processors.
+ */
+public class LoaderThreads {
+    private static volatile ForkJoinPool pool;
+
+    public static ForkJoinPool pool() {
+        ForkJoinPool pool = LoaderThreads.pool;
+        if (pool == null) {
+            synchronized (LoaderThreads.class) {
+                pool = LoaderThreads.pool;
+                if (pool == null) {
+                    LoaderThreads.pool = pool = createPool();
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static ForkJoinPool createPool() {
+        int threads = Math.max(1, Integer.getInteger("lode.threads", Runtime.getRuntime().availableProcessors()));
+        AtomicInteger counter = new AtomicInteger();
+        return new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("Lode Worker #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+}
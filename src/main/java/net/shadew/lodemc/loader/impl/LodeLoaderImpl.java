@@ -16,28 +16,42 @@
 
 package net.shadew.lodemc.loader.impl;
 
+import org.objectweb.asm.Type;
 import org.spongepowered.asm.launch.MixinBootstrap;
 import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.Mixins;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import net.shadew.lodemc.loader.api.Environment;
 import net.shadew.lodemc.loader.api.LoaderException;
 import net.shadew.lodemc.loader.api.LodeLoader;
+import net.shadew.lodemc.loader.api.mod.AnnotatedElement;
 import net.shadew.lodemc.loader.api.mod.Mod;
 import net.shadew.lodemc.loader.api.mod.ModConfig;
 import net.shadew.lodemc.loader.api.plugin.LoaderPlugin;
 import net.shadew.lodemc.loader.api.transformer.ClassPath;
 import net.shadew.lodemc.loader.api.transformer.Transformer;
+import net.shadew.lodemc.loader.api.transformer.TreeTransformer;
+import net.shadew.lodemc.loader.impl.cache.Fingerprint;
+import net.shadew.lodemc.loader.impl.cache.TransformationCache;
 import net.shadew.lodemc.loader.impl.classloader.ExtendableClassLoader;
 import net.shadew.lodemc.loader.impl.classloader.GameClassLoader;
 import net.shadew.lodemc.loader.impl.classloader.MainClassPath;
 import net.shadew.lodemc.loader.impl.discovery.ModDiscoveryPhase;
 import net.shadew.lodemc.loader.impl.discovery.ModFile;
+import net.shadew.lodemc.loader.impl.modloader.AnnotatedElementIndex;
+import net.shadew.lodemc.loader.impl.modloader.DeferredEntrypoints;
+import net.shadew.lodemc.loader.impl.modloader.EntrypointContainer;
+import net.shadew.lodemc.loader.impl.modloader.EntrypointLinkPhase;
 import net.shadew.lodemc.loader.impl.modloader.ModImpl;
 import net.shadew.lodemc.loader.impl.modloader.ModLoaderPhase;
 import net.shadew.lodemc.loader.impl.modloader.ModScanPhase;
@@ -60,11 +74,16 @@ public class LodeLoaderImpl implements LodeLoader {
     private final Map<String, Mod> modsById = new LinkedHashMap<>();
     private final List<ClassPath> defaultClassPaths = new ArrayList<>();
     private final Map<String, List<LoaderPlugin>> plugins = new LinkedHashMap<>();
+    private final List<String> mixinConfigs = new ArrayList<>();
+    private final Set<String> annotations = new HashSet<>();
+    private AnnotatedElementIndex annotatedElements;
+    private final DeferredEntrypoints deferredEntrypoints = new DeferredEntrypoints();
 
     private final List<Path> modsFolders = new ArrayList<>();
     private LoaderPhase<?> currentPhase;
 
     private boolean transformersFrozen;
+    private final ThreadLocal<List<Runnable>> installBuffer = new ThreadLocal<>();
 
     private LodeLoaderImpl(Environment environment, ExtendableClassLoader agentClassLoader) {
         this.environment = environment;
@@ -81,12 +100,14 @@ public class LodeLoaderImpl implements LodeLoader {
 
         // Add all mod jars to the agent class loader, so we can load plugin classes from them
         modFiles.forEach(agentClassLoader::addClassPath);
+        agentClassLoader.freezeClassPaths();
 
         // Load plugins (these are loaded from the classpath)
         pluginInfo.addAll(startPhase(PluginLoaderPhase.INSTANCE));
 
         // Add agent packages: these are the packages defined in lode_loader_plugin.json files
         pluginInfo.forEach(info -> gameClassLoader.addAgentPackage(info.getPluginPackage()));
+        gameClassLoader.freezeAgentPackages();
 
         // Instantiate plugins
         plugins.putAll(startPhase(new PluginInstantiatorPhase(pluginInfo)));
@@ -94,23 +115,31 @@ public class LodeLoaderImpl implements LodeLoader {
 
         // Initialize mod loading
         initDefaults();
-        startPhase(new PluginInitPhase(plugins, LoaderPlugin::init));
+        startPhase(new PluginInitPhase("InitializePlugins", pluginInfo, plugins, LoaderPlugin::init));
         transformersFrozen = true;
+        gameClassLoader.freezeTransformers();
 
         // Load mods
         mods.addAll(startPhase(new ModLoaderPhase(modFiles)));
         mods.forEach(mod -> modsById.put(mod.getId(), mod));
+        ModDiscoveryPhase.INSTANCE.getSnapshot().save();
         loadMixinConfigs();
 
         // Scan mods for annotated elements
-        startPhase(new ModScanPhase(mods));
+        startPhase(new ModScanPhase(mods, annotations));
+        annotatedElements = new AnnotatedElementIndex(mods);
 
         // Setup game class loader
         defaultClassPaths.forEach(gameClassLoader::addClassPath);
         mods.forEach(mod -> gameClassLoader.addClassPath(mod.getClassPath()));
+        gameClassLoader.freezeClassPaths();
+        initTransformationCache();
 
         // Post-initialize
-        startPhase(new PluginInitPhase(plugins, LoaderPlugin::postInit));
+        startPhase(new PluginInitPhase("PostInitializePlugins", pluginInfo, plugins, LoaderPlugin::postInit));
+
+        // Resolve entrypoints now that mod classes can be loaded
+        startPhase(new EntrypointLinkPhase(mods, deferredEntrypoints));
 
         Thread.currentThread().setContextClassLoader(gameClassLoader);
         System.out.println("Loaded " + mods.size() + " mods");
@@ -120,6 +149,8 @@ public class LodeLoaderImpl implements LodeLoader {
         installClassPath(new MainClassPath(getClass().getClassLoader()));
         MixinBootstrap.init();
         setMixinToDefaultPhase();
+        declareAnnotation(EntrypointContainer.ENTRYPOINT_ANNOTATION);
+        declareAnnotation(CoLoadInjector.CO_LOAD_ANNOTATION);
         installTransformer(new SideStripper(getEnvironment()));
         installTransformer(new CoLoadInjector());
         installTransformer(new LodeInjector());
@@ -128,19 +159,86 @@ public class LodeLoaderImpl implements LodeLoader {
             System.out.println("Outputting classes to .lode/debug/classes");
             installPostTransformer(new DebugTransformer(System.getProperty("lode.debug.output_classes")));
         }
+        if (System.getProperties().containsKey("lode.debug.transformer_stats")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(gameClassLoader::printTransformerStats, "Lode Transformer Stats"));
+        }
     }
 
     private void loadMixinConfigs() {
-        mods.stream()
-            .map(Mod::getConfig)
-            .map(ModConfig::getMixinConfigs)
-            .flatMap(
-                mixins -> mixins.entrySet()
-                                .stream()
-                                .filter(e -> e.getKey().equals("minecraft") || isModLoaded(e.getKey()))
-                                .flatMap(e -> e.getValue().stream())
-            )
-            .forEach(Mixins::addConfiguration);
+        mixinConfigs.addAll(
+            mods.stream()
+                .map(Mod::getConfig)
+                .map(ModConfig::getMixinConfigs)
+                .flatMap(
+                    mixins -> mixins.entrySet()
+                                    .stream()
+                                    .filter(e -> e.getKey().equals("minecraft") || isModLoaded(e.getKey()))
+                                    .flatMap(e -> e.getValue().stream())
+                )
+                .collect(Collectors.toList())
+        );
+        mixinConfigs.forEach(Mixins::addConfiguration);
+    }
+
+    private void initTransformationCache() {
+        if (System.getProperties().containsKey("lode.cache.disable")) {
+            return;
+        }
+        if (System.getProperties().containsKey("lode.debug.output_classes")) {
+            // The debug transformer has to see every class
+            return;
+        }
+
+        try {
+            byte[] fingerprint = computeTransformationFingerprint();
+            if (fingerprint == null) {
+                return;
+            }
+
+            Path dir = getCacheDirectory().resolve("classes");
+            gameClassLoader.setTransformationCache(TransformationCache.open(dir, fingerprint));
+        } catch (IOException exc) {
+            System.err.println("Failed to open transformation cache, classes will not be cached");
+            exc.printStackTrace();
+        }
+    }
+
+    private byte[] computeTransformationFingerprint() throws IOException {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.add("lode-transformation-cache:2");
+        fingerprint.add(environment.name());
+
+        // The installed transformer chain, and whatever the transformers say their output depends on. Post
+        // transformers (Mixin) always run, their output is never cached.
+        for (Object transformer : gameClassLoader.getTransformers()) {
+            String cacheKey = transformer instanceof Transformer
+                              ? ((Transformer) transformer).getCacheKey()
+                              : ((TreeTransformer) transformer).getCacheKey();
+            if (cacheKey == null) {
+                System.out.println("Transformer " + transformer.getClass().getName() + " can't be cached, classes will not be cached");
+                return null;
+            }
+            fingerprint.add(transformer.getClass().getName());
+            fingerprint.add(cacheKey);
+        }
+
+        // The code of the loader, the game and libraries, this includes the code of the transformers themselves
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            Path path = Paths.get(entry);
+            if (!entry.isEmpty() && Files.exists(path)) {
+                fingerprint.addFile(path);
+            }
+        }
+
+        // The mod set, mods add plugins with transformers and register co-loaded classes
+        for (ModImpl mod : mods) {
+            fingerprint.add(mod.getId());
+            fingerprint.add(String.valueOf(mod.getConfig().getVersion()));
+            if (mod.getClassPath() instanceof ModFile) {
+                fingerprint.addFile(((ModFile) mod.getClassPath()).getFilePath());
+            }
+        }
+        return fingerprint.finish();
     }
 
     private static void setMixinToDefaultPhase() {
@@ -168,6 +266,10 @@ public class LodeLoaderImpl implements LodeLoader {
         modsFolders.add(modsFolder);
     }
 
+    public Path getCacheDirectory() {
+        return Paths.get(".lode", "cache");
+    }
+
     public LoaderPhase<?> getCurrentPhase() {
         return currentPhase;
     }
@@ -177,6 +279,10 @@ public class LodeLoaderImpl implements LodeLoader {
         return environment;
     }
 
+    public List<ModFile> getModFiles() {
+        return modFiles;
+    }
+
     @Override
     public List<Path> getModsFolders() {
         return modsFolders;
@@ -210,24 +316,116 @@ public class LodeLoaderImpl implements LodeLoader {
         return modsById.containsKey(id);
     }
 
+    @Override
+    public List<AnnotatedElement> getAnnotatedElements(Type annotationType) {
+        checkAnnotationDeclared(annotationType);
+        return getAnnotatedElementIndex().getElements(annotationType);
+    }
+
+    @Override
+    public List<AnnotatedElement> getAnnotatedElements(Type annotationType, ElementType elementType) {
+        checkAnnotationDeclared(annotationType);
+        return getAnnotatedElementIndex().getElements(annotationType, elementType);
+    }
+
+    @Override
+    public List<AnnotatedElement> getAnnotatedElementsIn(Type containerType) {
+        return getAnnotatedElementIndex().getElementsIn(containerType);
+    }
+
+    private AnnotatedElementIndex getAnnotatedElementIndex() {
+        if (annotatedElements == null) {
+            throw new RuntimeException("Mods are not scanned yet");
+        }
+        return annotatedElements;
+    }
+
+    @Override
+    public void triggerEntrypoints(String event) {
+        deferredEntrypoints.triggerEvent(event);
+    }
+
+    public DeferredEntrypoints getDeferredEntrypoints() {
+        return deferredEntrypoints;
+    }
+
     public List<ClassPath> getDefaultClassPaths() {
         return defaultClassPaths;
     }
 
     @Override
     public void installClassPath(ClassPath classPath) {
-        if (transformersFrozen) {
-            throw new RuntimeException("Plugin initialization is over");
-        }
-        defaultClassPaths.add(classPath);
+        install(() -> defaultClassPaths.add(classPath));
     }
 
     @Override
     public void installTransformer(Transformer transformer) {
+        install(() -> gameClassLoader.addTransformer(transformer));
+    }
+
+    @Override
+    public void installTransformer(TreeTransformer transformer) {
+        install(() -> gameClassLoader.addTransformer(transformer));
+    }
+
+    @Override
+    public void declareAnnotation(Type annotationType) {
+        install(() -> annotations.add(annotationType.getDescriptor()));
+    }
+
+    /**
+     * Fails when mods were not scanned for the given annotation, which would otherwise look like no mod uses it.
+     */
+    public void checkAnnotationDeclared(Type annotationType) {
+        if (!annotations.contains(annotationType.getDescriptor())) {
+            throw new RuntimeException(
+                "Annotation " + annotationType.getClassName() + " was not declared, mods are only scanned for "
+                    + "annotations declared with LodeLoader.declareAnnotation"
+            );
+        }
+    }
+
+    private void install(Runnable install) {
         if (transformersFrozen) {
             throw new RuntimeException("Plugin initialization is over");
         }
-        gameClassLoader.addTransformer(transformer);
+
+        List<Runnable> buffer = installBuffer.get();
+        if (buffer != null) {
+            buffer.add(install);
+        } else {
+            synchronized (this) {
+                install.run();
+            }
+        }
+    }
+
+    /**
+     * Runs the given action, holding back all classpaths, transformers and annotations it installs on this thread. Since
+     * plugins are initialized concurrently, this lets their installs be applied in plugin order rather than in the order
+     * they happened to run in.
+     *
+     * @return The held back installs, to be passed to {@link #applyInstalls}
+     */
+    public List<Runnable> collectInstalls(Runnable action) {
+        List<Runnable> installs = new ArrayList<>();
+        List<Runnable> prevBuffer = installBuffer.get();
+        installBuffer.set(installs);
+        try {
+            action.run();
+        } finally {
+            // A worker thread may run another plugin while it waits, which must not drop the buffer of the outer one
+            if (prevBuffer != null) {
+                installBuffer.set(prevBuffer);
+            } else {
+                installBuffer.remove();
+            }
+        }
+        return installs;
+    }
+
+    public synchronized void applyInstalls(List<Runnable> installs) {
+        installs.forEach(Runnable::run);
     }
 
     private void installPostTransformer(Transformer transformer) {
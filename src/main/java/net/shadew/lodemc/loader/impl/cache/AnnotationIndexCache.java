@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import net.shadew.lodemc.loader.impl.index.AnnotationIndex;
+
+/**
+ * Stores annotation indices of mod archives on disk, named after the hash of the archive they index.
+ */
+public class AnnotationIndexCache {
+    private final Path directory;
+
+    public AnnotationIndexCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the index of the archive with the given hash, or null when there is no valid index for it.
+     */
+    public AnnotationIndex get(String archiveHash) {
+        Path file = directory.resolve(archiveHash + ".idx");
+        try {
+            AnnotationIndex index = AnnotationIndex.read(Files.readAllBytes(file));
+            if (!index.getArchiveHash().equals(archiveHash)) {
+                throw new IOException("Annotation index is for a different archive");
+            }
+            return index;
+        } catch (NoSuchFileException exc) {
+            return null;
+        } catch (IOException exc) {
+            System.err.println("Ignoring annotation index " + file + ": " + exc.getMessage());
+            return null;
+        }
+    }
+
+    public void put(AnnotationIndex index) {
+        Path file = directory.resolve(index.getArchiveHash() + ".idx");
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, index.getArchiveHash(), ".tmp");
+            try {
+                Files.write(temp, index.toByteArray());
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException exc) {
+            exc.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Accumulates everything a cached result depends on into a single SHA-256 hash.
+ */
+public class Fingerprint {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest = newDigest();
+    private final byte[] longBuf = new byte[8];
+
+    public Fingerprint add(String str) {
+        return add(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Fingerprint add(long value) {
+        for (int i = 0; i < 8; i++) {
+            longBuf[i] = (byte) (value >>> (56 - i * 8));
+        }
+        digest.update(longBuf);
+        return this;
+    }
+
+    public Fingerprint add(byte[] bytes) {
+        add(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    /**
+     * Adds the path, size and modification time of a file. Directories are added recursively.
+     */
+    public Fingerprint addFile(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        add(path.toAbsolutePath().toString());
+        add(attrs.size());
+        add(attrs.lastModifiedTime().toMillis());
+
+        if (attrs.isDirectory()) {
+            List<Path> children;
+            try (Stream<Path> list = Files.list(path)) {
+                children = list.sorted().collect(Collectors.toList());
+            } catch (UncheckedIOException exc) {
+                throw exc.getCause();
+            }
+            for (Path child : children) {
+                addFile(child);
+            }
+        }
+        return this;
+    }
+
+    public byte[] finish() {
+        return digest.digest();
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exc) {
+            throw new RuntimeException("SHA-256 not supported", exc);
+        }
+    }
+
+    public static String toHex(byte[] hash) {
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[hash[i] >>> 4 & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Extracts jars that are included in other jars to disk, so that they can be opened like any other jar. Files are named
+ * after the hash of their contents, so a library that is included by multiple mods is only extracted once.
+ */
+public class InclusionCache {
+    private final Path directory;
+
+    public InclusionCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cached file with the given contents, writing it first if it isn't cached yet.
+     */
+    public Path extract(ByteBuffer data) throws IOException {
+        MessageDigest digest = Fingerprint.newDigest();
+        digest.update(data.duplicate());
+        Path file = directory.resolve(Fingerprint.toHex(digest.digest()) + ".jar");
+        if (Files.isRegularFile(file) && Files.size(file) == data.remaining()) {
+            return file;
+        }
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "inclusion", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer src = data.duplicate();
+                while (src.hasRemaining()) {
+                    channel.write(src);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileSystemException exc) {
+            // Another thread extracted the same file and may have it open already, which is just as good
+            if (!Files.isRegularFile(file) || Files.size(file) != data.remaining()) {
+                throw exc;
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed on-disk cache of transformed class bytes. Entries are keyed by a hash of the class name, the
+ * untransformed bytes and a fingerprint of everything that can influence transformation. When the fingerprint changes,
+ * the cache is wiped as a whole. Only the output of the regular transformers is cached, post transformers run on every
+ * load.
+ */
+public class TransformationCache {
+    private static final byte[] STRIPPED = new byte[0];
+
+    private final Path directory;
+    private final byte[] fingerprint;
+    private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(Fingerprint::newDigest);
+
+    private TransformationCache(Path directory, byte[] fingerprint) {
+        this.directory = directory;
+        this.fingerprint = fingerprint;
+    }
+
+    public String key(String className, byte[] bytes) {
+        MessageDigest digest = this.digest.get();
+        digest.update(fingerprint);
+        digest.update(className.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(bytes);
+        return Fingerprint.toHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached transformation result for the given key, an empty array if the class was stripped by a
+     * transformer, or null if nothing is cached.
+     */
+    public byte[] get(String key) {
+        Path file = file(key);
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException exc) {
+            return null;
+        } catch (IOException exc) {
+            exc.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a transformation result, null meaning that the class was stripped by a transformer.
+     */
+    public void put(String key, byte[] bytes) {
+        Path file = file(key);
+        try {
+            Files.createDirectories(file.getParent());
+
+            // Write to a temporary file first and move it in place, so that no other thread or process can read a
+            // partially written entry
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try {
+                Files.write(temp, bytes == null ? STRIPPED : bytes);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException exc) {
+            exc.printStackTrace();
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2));
+    }
+
+    public static TransformationCache open(Path directory, byte[] fingerprint) throws IOException {
+        Path fingerprintFile = directory.resolve("fingerprint");
+        byte[] existing = Files.exists(fingerprintFile) ? Files.readAllBytes(fingerprintFile) : null;
+
+        if (!Arrays.equals(existing, fingerprint)) {
+            if (Files.exists(directory)) {
+                System.out.println("Transformation cache is outdated, clearing " + directory);
+                clear(directory);
+            }
+            Files.createDirectories(directory);
+            Files.write(fingerprintFile, fingerprint);
+        }
+        return new TransformationCache(directory, fingerprint);
+    }
+
+    private static void clear(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                 .filter(path -> !path.equals(directory))
+                 .forEach(path -> {
+                     try {
+                         Files.delete(path);
+                     } catch (IOException exc) {
+                         throw new UncheckedIOException(exc);
+                     }
+                 });
+        } catch (UncheckedIOException exc) {
+            throw exc.getCause();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.shadew.lodemc.loader.api.transformer.ClassPath;
+
+/**
+ * Maps file names to the class paths that provide them. When multiple class paths provide the same class, the class path
+ * that was registered last wins, so that mods can replace classes of the game. For other resources the class path that
+ * was registered first wins. Class paths that can't list their files are still probed, but only when their position
+ * could make them win over the indexed owner of a file.
+ * <p>
+ * Files that are not in the index are known to be absent, unless there are class paths that could not be indexed. In
+ * that case names that turned out to be missing are remembered, so that probing for them again is just as cheap.
+ */
+public class ClassPathIndex {
+    private static final int MAX_MISSES = 1 << 16;
+
+    private final Map<String, ClassPath> owners = new HashMap<>();
+    private final Map<String, List<ClassPath>> duplicates = new HashMap<>();
+    private final Set<String> directories = new HashSet<>();
+    private final Map<ClassPath, Integer> positions = new IdentityHashMap<>();
+    private final List<ClassPath> unindexed = new ArrayList<>();
+    private final List<Integer> unindexedPositions = new ArrayList<>();
+    private final Set<String> misses = ConcurrentHashMap.newKeySet();
+
+    private ClassPathIndex() {
+    }
+
+    public byte[] loadClassBytes(String internalName) throws ClassNotFoundException {
+        String file = internalName.concat(".class");
+        ClassPath owner = classOwner(file);
+        if (owner == null && isKnownMissing(file)) {
+            throw new MissingClassException(internalName);
+        }
+
+        if (!unindexed.isEmpty()) {
+            int ownerPos = owner == null ? -1 : positions.get(owner);
+            for (int i = unindexed.size() - 1; i >= 0 && unindexedPositions.get(i) > ownerPos; i--) {
+                try {
+                    return unindexed.get(i).loadClassBytes(internalName);
+                } catch (ClassNotFoundException ignored) {
+                }
+            }
+        }
+        if (owner == null) {
+            miss(file);
+            throw new MissingClassException(internalName);
+        }
+        return owner.loadClassBytes(internalName);
+    }
+
+    private ClassPath classOwner(String file) {
+        if (!duplicates.isEmpty()) {
+            List<ClassPath> providers = duplicates.get(file);
+            if (providers != null) {
+                return providers.get(providers.size() - 1);
+            }
+        }
+        return owners.get(file);
+    }
+
+    /**
+     * Whether the given resource name can be looked up in this index. Directories, and names that class paths may
+     * interpret differently, are not indexed and must be looked up in all class paths.
+     */
+    public boolean isIndexed(String name) {
+        return !name.isEmpty() && !name.startsWith("/") && !name.endsWith("/") && !directories.contains(name);
+    }
+
+    public URL findResource(String name) {
+        ClassPath owner = owners.get(name);
+        if (owner == null && isKnownMissing(name)) {
+            return null;
+        }
+
+        if (!unindexed.isEmpty()) {
+            int ownerPos = owner == null ? Integer.MAX_VALUE : positions.get(owner);
+            for (int i = 0, l = unindexed.size(); i < l && unindexedPositions.get(i) < ownerPos; i++) {
+                for (URL url : unindexed.get(i).findSources(name)) {
+                    return url;
+                }
+            }
+        }
+        if (owner == null) {
+            miss(name);
+            return null;
+        }
+        for (URL url : owner.findSources(name)) {
+            return url;
+        }
+        return null;
+    }
+
+    public List<URL> findResources(String name) {
+        List<ClassPath> providers = duplicates.get(name);
+        if (providers == null) {
+            ClassPath owner = owners.get(name);
+            if (owner == null && isKnownMissing(name)) {
+                return Collections.emptyList();
+            }
+            providers = owner == null ? Collections.emptyList() : Collections.singletonList(owner);
+        }
+
+        // Merge the indexed providers with the unindexed class paths, in registration order
+        List<URL> result = new ArrayList<>();
+        int u = 0;
+        for (ClassPath provider : providers) {
+            int pos = positions.get(provider);
+            for (; u < unindexed.size() && unindexedPositions.get(u) < pos; u++) {
+                unindexed.get(u).findSources(name).forEach(result::add);
+            }
+            provider.findSources(name).forEach(result::add);
+        }
+        for (; u < unindexed.size(); u++) {
+            unindexed.get(u).findSources(name).forEach(result::add);
+        }
+
+        if (result.isEmpty()) {
+            miss(name);
+        }
+        return result;
+    }
+
+    private boolean isKnownMissing(String file) {
+        return unindexed.isEmpty() || misses.contains(file);
+    }
+
+    private void miss(String file) {
+        if (!unindexed.isEmpty() && misses.size() < MAX_MISSES) {
+            misses.add(file);
+        }
+    }
+
+    public int size() {
+        return owners.size();
+    }
+
+    public static ClassPathIndex build(Collection<ClassPath> classPaths) {
+        ClassPathIndex index = new ClassPathIndex();
+        int pos = 0;
+        for (ClassPath path : classPaths) {
+            Iterable<String> files = path.listFiles();
+            if (files == null) {
+                index.unindexed.add(path);
+                index.unindexedPositions.add(pos);
+            } else {
+                index.positions.put(path, pos);
+                for (String file : files) {
+                    index.add(file, path);
+                }
+            }
+            pos++;
+        }
+        return index;
+    }
+
+    private void add(String file, ClassPath path) {
+        ClassPath owner = owners.putIfAbsent(file, path);
+        if (owner != null && owner != path) {
+            duplicates.computeIfAbsent(file, k -> new ArrayList<>(Collections.singletonList(owner))).add(path);
+        }
+
+        // Remember directories, class paths may resolve them but we don't index them
+        for (int slash = file.lastIndexOf('/'); slash > 0; slash = file.lastIndexOf('/', slash - 1)) {
+            if (!directories.add(file.substring(0, slash))) {
+                break;
+            }
+        }
+    }
+}
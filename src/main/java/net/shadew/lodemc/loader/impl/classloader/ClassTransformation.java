@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * The state of a class moving through the transformer chain. It holds the class either as bytes or as a parsed node
+ * and only converts between the two when a transformer needs the other form.
+ */
+class ClassTransformation {
+    private byte[] bytes;
+    private ClassReader reader;
+    private ClassNode node;
+    private boolean nodeModified;
+
+    ClassTransformation(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    byte[] bytes() {
+        if (nodeModified) {
+            // Reuse the constant pool of the original class, this is what makes ASM write it fast
+            ClassWriter writer = new ClassWriter(reader, 0);
+            node.accept(writer);
+            bytes = writer.toByteArray();
+            nodeModified = false;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the bytes of the class if they are up to date, without serializing a modified node.
+     */
+    byte[] currentBytes() {
+        return nodeModified ? null : bytes;
+    }
+
+    void setBytes(byte[] bytes) {
+        if (bytes != this.bytes) {
+            this.bytes = bytes;
+            reader = null;
+            node = null;
+        }
+    }
+
+    ClassNode node() {
+        if (node == null) {
+            reader = new ClassReader(bytes);
+            node = new ClassNode();
+            reader.accept(node, 0);
+        }
+        return node;
+    }
+
+    void markModified() {
+        nodeModified = true;
+    }
+}
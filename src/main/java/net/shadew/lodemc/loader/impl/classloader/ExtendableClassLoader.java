@@ -18,32 +18,122 @@ package net.shadew.lodemc.loader.impl.classloader;
 
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import net.shadew.lodemc.loader.api.transformer.ClassPath;
 import net.shadew.lodemc.loader.api.transformer.Transformer;
+import net.shadew.lodemc.loader.api.transformer.TreeTransformer;
+import net.shadew.lodemc.loader.impl.cache.TransformationCache;
 
 public class ExtendableClassLoader extends ClassLoader {
-    private final Set<ClassPath> classPaths = new LinkedHashSet<>();
-    private final Set<Transformer> transformers = new LinkedHashSet<>();
-    private final Set<Transformer> postTransformer = new LinkedHashSet<>();
+    static {
+        // Class loading locks per class name instead of on the loader itself, so that multiple threads can load and
+        // transform classes at the same time. Transformers must therefore be thread safe, as their API documents.
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final Set<ClassPath> classPaths = new CopyOnWriteArraySet<>();
+    private final Set<TransformerStep> transformers = new CopyOnWriteArraySet<>();
+    private final Set<TransformerStep> postTransformer = new CopyOnWriteArraySet<>();
+    private volatile ClassPathIndex index;
+    private volatile TransformerDispatch dispatch;
+    private volatile TransformationCache transformationCache;
 
     public ExtendableClassLoader(ClassLoader parent) {
         super(parent);
     }
 
     public void addClassPath(ClassPath path) {
+        if (index != null) {
+            throw new RuntimeException("Class paths are frozen");
+        }
         classPaths.add(path);
     }
 
+    public void freezeClassPaths() {
+        index = ClassPathIndex.build(classPaths);
+    }
+
     public void addTransformer(Transformer transformer) {
-        transformers.add(transformer);
+        addStep(transformers, TransformerStep.of(transformer));
+    }
+
+    public void addTransformer(TreeTransformer transformer) {
+        addStep(transformers, TransformerStep.of(transformer));
     }
 
     public void addPostTransformer(Transformer transformer) {
-        postTransformer.add(transformer);
+        addStep(postTransformer, TransformerStep.of(transformer));
+    }
+
+    private void addStep(Set<TransformerStep> steps, TransformerStep step) {
+        if (dispatch != null) {
+            throw new RuntimeException("Transformers are frozen");
+        }
+        steps.add(step);
+    }
+
+    /**
+     * Compiles the targets of all transformers into a dispatch table. No transformers can be added afterwards.
+     */
+    public void freezeTransformers() {
+        dispatch = TransformerDispatch.compile(transformers, postTransformer);
+    }
+
+    private TransformerDispatch.Chain transformersFor(String internalName) {
+        TransformerDispatch dispatch = this.dispatch;
+        if (dispatch == null) {
+            return TransformerDispatch.all(transformers, postTransformer);
+        }
+        return dispatch.lookup(internalName);
+    }
+
+    public List<Object> getTransformers() {
+        List<Object> list = new ArrayList<>();
+        transformers.forEach(step -> list.add(step.transformer()));
+        return list;
+    }
+
+    public List<Object> getPostTransformers() {
+        List<Object> list = new ArrayList<>();
+        postTransformer.forEach(step -> list.add(step.transformer()));
+        return list;
+    }
+
+    /**
+     * Prints, for each transformer, how many of the classes it was applied to it actually modified.
+     */
+    public void printTransformerStats() {
+        printTransformerStats(transformers);
+        printTransformerStats(postTransformer);
+    }
+
+    private static void printTransformerStats(Set<TransformerStep> steps) {
+        for (TransformerStep step : steps) {
+            System.out.println(
+                step.transformer().getClass().getName() + ": modified "
+                    + step.modified() + " of " + step.applied() + " classes"
+            );
+        }
+    }
+
+    public void setTransformationCache(TransformationCache cache) {
+        transformationCache = cache;
     }
 
     public byte[] getClassBytes(String internalName) throws ClassNotFoundException {
+        ClassTransformation cls = new ClassTransformation(loadRawClassBytes(internalName));
+        transform(transformersFor(internalName).transformers, internalName, cls);
+        return cls.bytes();
+    }
+
+    private byte[] loadRawClassBytes(String internalName) throws ClassNotFoundException {
+        ClassPathIndex index = this.index;
+        if (index != null) {
+            return index.loadClassBytes(internalName);
+        }
+
+        // Not frozen yet: probe all class paths, the last class path that has the class wins
         byte[] bytes = null;
         for (ClassPath path : classPaths) {
             try {
@@ -54,37 +144,69 @@ public class ExtendableClassLoader extends ClassLoader {
         if (bytes == null) {
             throw new ClassNotFoundException(internalName);
         }
-        for (Transformer transformer : transformers) {
-            if (transformer.canTransform(internalName)) {
-                bytes = transformer.transformClassBytes(internalName, bytes);
-                if (bytes == null) {
-                    throw new ClassNotFoundException(internalName);
-                }
-            }
-        }
         return bytes;
     }
 
-    protected byte[] postTransform(String name, byte[] bytes) throws ClassNotFoundException {
-        for (Transformer transformer : postTransformer) {
-            if (transformer.canTransform(name)) {
-                bytes = transformer.transformClassBytes(name, bytes);
-                if (bytes == null) {
-                    throw new ClassNotFoundException(name);
-                }
+    private static void transform(TransformerStep[] steps, String name, ClassTransformation cls) throws ClassNotFoundException {
+        for (TransformerStep step : steps) {
+            if (step.canTransform(name) && !step.apply(name, cls)) {
+                throw new RemovedClassException(name);
             }
         }
-        return bytes;
+    }
+
+    private static byte[] transformAll(TransformerStep[] steps, String name, byte[] bytes) throws ClassNotFoundException {
+        // Tree transformers share one parsed node, it is only serialized when a byte transformer needs it or when all
+        // transformers are done
+        ClassTransformation cls = new ClassTransformation(bytes);
+        transform(steps, name, cls);
+        return cls.bytes();
     }
 
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
         String internalName = name.replace('.', '/');
-        byte[] bytes = getClassBytes(internalName);
-        bytes = postTransform(name, bytes);
+        byte[] bytes = loadTransformedClass(name, internalName);
         return defineClass(name, bytes, 0, bytes.length);
     }
 
+    private byte[] loadTransformedClass(String name, String internalName) throws ClassNotFoundException {
+        TransformerDispatch.Chain chain = transformersFor(internalName);
+        byte[] bytes = loadPreTransformedClass(name, internalName, chain);
+
+        // Post transformers always run, even for cached classes: Mixin selects and prepares its configs and generates
+        // classes while it transforms, which it can't do when it never sees a class
+        return transformAll(chain.postTransformers, name, bytes);
+    }
+
+    private byte[] loadPreTransformedClass(String name, String internalName, TransformerDispatch.Chain chain) throws ClassNotFoundException {
+        byte[] bytes = loadRawClassBytes(internalName);
+
+        TransformationCache cache = transformationCache;
+        if (cache == null) {
+            return transformAll(chain.transformers, internalName, bytes);
+        }
+
+        String key = cache.key(internalName, bytes);
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            if (cached.length == 0) {
+                throw new RemovedClassException(name);
+            }
+            return cached;
+        }
+
+        try {
+            bytes = transformAll(chain.transformers, internalName, bytes);
+        } catch (RemovedClassException exc) {
+            // A transformer stripped this class, remember that too
+            cache.put(key, null);
+            throw exc;
+        }
+        cache.put(key, bytes);
+        return bytes;
+    }
+
     @Override
     protected String findLibrary(String libname) {
         return null;
@@ -92,6 +214,11 @@ public class ExtendableClassLoader extends ClassLoader {
 
     @Override
     protected URL findResource(String name) {
+        ClassPathIndex index = this.index;
+        if (index != null && index.isIndexed(name)) {
+            return index.findResource(name);
+        }
+
         for (ClassPath path : classPaths) {
             for (URL url : path.findSources(name)) {
                 return url; // At the instant there is a class path with this url we return it
@@ -102,6 +229,11 @@ public class ExtendableClassLoader extends ClassLoader {
 
     @Override
     protected Enumeration<URL> findResources(String name) {
+        ClassPathIndex index = this.index;
+        if (index != null && index.isIndexed(name)) {
+            return Collections.enumeration(index.findResources(name));
+        }
+
         List<URL> result = new ArrayList<>();
         for (ClassPath path : classPaths) {
             for (URL url : path.findSources(name)) {
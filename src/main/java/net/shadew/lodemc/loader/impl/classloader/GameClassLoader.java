@@ -16,29 +16,62 @@
 
 package net.shadew.lodemc.loader.impl.classloader;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 public class GameClassLoader extends ExtendableClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     private final ClassLoader agent;
-    private final Set<String> agentPackages = new HashSet<>();
+    private final Set<String> agentPackages = new CopyOnWriteArraySet<>();
+    private volatile PackageTrie agentPackageTrie;
 
     public GameClassLoader(ClassLoader agent) {
-        super(null);
+        super(platformClassLoader());
         this.agent = agent;
     }
 
+    private static ClassLoader platformClassLoader() {
+        // Java 9+ splits the JDK over the boot and platform class loaders, on Java 8 the boot class loader has it all
+        try {
+            return (ClassLoader) ClassLoader.class.getMethod("getPlatformClassLoader").invoke(null);
+        } catch (ReflectiveOperationException exc) {
+            return null;
+        }
+    }
+
     public void addAgentPackage(String pkg) {
+        if (agentPackageTrie != null) {
+            throw new RuntimeException("Agent packages are frozen");
+        }
         agentPackages.add(pkg);
     }
 
-    @Override
-    protected Class<?> findClass(String name) throws ClassNotFoundException {
+    public void freezeAgentPackages() {
+        agentPackageTrie = PackageTrie.build(agentPackages);
+    }
+
+    private boolean isAgentClass(String name) {
+        PackageTrie trie = agentPackageTrie;
+        if (trie != null) {
+            return trie.contains(name);
+        }
+
         for (String pkg : agentPackages) {
             if (name.startsWith(pkg + ".")) {
-                return agent.loadClass(name);
+                return true;
             }
         }
+        return false;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (isAgentClass(name)) {
+            return agent.loadClass(name);
+        }
         return super.findClass(name);
     }
 }
@@ -16,12 +16,23 @@
 
 package net.shadew.lodemc.loader.impl.classloader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
 
 import net.shadew.lodemc.loader.api.transformer.ClassPath;
 import net.shadew.util.misc.IO;
@@ -56,4 +67,61 @@ public class MainClassPath implements ClassPath {
             throw new ClassNotFoundException(className);
         }
     }
+
+    @Override
+    public Iterable<String> listFiles() {
+        // We can only tell what the system class loader provides, other loaders are probed instead
+        if (loader != ClassLoader.getSystemClassLoader()) {
+            return null;
+        }
+
+        List<Path> roots = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) roots.add(Paths.get(entry));
+        }
+
+        // The system class loader also provides what its parent provides, on Java 8 this is the extension class loader
+        // which we can list. Newer Java versions have a platform class loader instead, which only provides platform
+        // modules. Classes in these are defined by the JDK itself and never reach the game class loader.
+        ClassLoader parent = loader.getParent();
+        if (parent instanceof URLClassLoader) {
+            try {
+                for (URL url : ((URLClassLoader) parent).getURLs()) {
+                    roots.add(Paths.get(url.toURI()));
+                }
+            } catch (URISyntaxException | IllegalArgumentException exc) {
+                return null;
+            }
+        }
+
+        List<String> files = new ArrayList<>();
+        try {
+            for (Path path : roots) {
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> paths = Files.walk(path)) {
+                        paths.filter(Files::isRegularFile)
+                             .forEach(file -> files.add(path.relativize(file).toString().replace('\\', '/')));
+                    }
+                } else if (Files.isRegularFile(path)) {
+                    try (JarFile jar = new JarFile(path.toFile())) {
+                        // Jars can pull in more jars via their manifest, we don't follow these
+                        Manifest manifest = jar.getManifest();
+                        if (manifest != null && manifest.getMainAttributes().getValue("Class-Path") != null) {
+                            return null;
+                        }
+
+                        Enumeration<JarEntry> entries = jar.entries();
+                        while (entries.hasMoreElements()) {
+                            JarEntry jarEntry = entries.nextElement();
+                            if (!jarEntry.isDirectory())
+                                files.add(jarEntry.getName());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException exc) {
+            return null;
+        }
+        return files;
+    }
 }
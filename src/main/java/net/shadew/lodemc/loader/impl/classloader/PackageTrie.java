@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A trie of package names that tells whether a class is in one of these packages or their subpackages. A lookup walks
+ * the class name once and allocates nothing, regardless of how many packages there are.
+ */
+class PackageTrie {
+    private final Node root = new Node();
+
+    private PackageTrie() {
+    }
+
+    /**
+     * Checks whether the given binary class name is in any of the packages in this trie, or any of their subpackages.
+     */
+    boolean contains(String className) {
+        Node node = root;
+        for (int i = 0, l = className.length(); i < l; i++) {
+            char c = className.charAt(i);
+            if (c == '.' && node.terminal) {
+                return true;
+            }
+            node = node.child(c);
+            if (node == null) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    static PackageTrie build(Collection<String> packages) {
+        PackageTrie trie = new PackageTrie();
+        for (String pkg : packages) {
+            if (pkg.isEmpty()) continue;
+
+            Node node = trie.root;
+            for (int i = 0, l = pkg.length(); i < l; i++) {
+                node = node.getOrAddChild(pkg.charAt(i));
+            }
+            node.terminal = true;
+        }
+        return trie;
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        Node child(char c) {
+            char[] keys = this.keys;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAddChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
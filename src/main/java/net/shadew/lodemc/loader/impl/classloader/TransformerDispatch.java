@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.shadew.lodemc.loader.api.transformer.TransformerTargets;
+
+/**
+ * Maps class names to the transformers that target them, compiled from the declared {@link TransformerTargets} of all
+ * transformers once they are frozen. Chains for exact class targets are computed upfront, chains for all other
+ * classes are computed once per package.
+ */
+class TransformerDispatch {
+    private final TransformerStep[] transformers;
+    private final TransformerStep[] postTransformers;
+    private final Map<String, Chain> classChains = new HashMap<>();
+    private final Map<String, Chain> packageChains = new ConcurrentHashMap<>();
+
+    private TransformerDispatch(TransformerStep[] transformers, TransformerStep[] postTransformers) {
+        this.transformers = transformers;
+        this.postTransformers = postTransformers;
+
+        Set<String> classes = new HashSet<>();
+        for (TransformerStep step : transformers)
+            classes.addAll(step.targets().getClasses());
+        for (TransformerStep step : postTransformers)
+            classes.addAll(step.targets().getClasses());
+
+        for (String cls : classes) {
+            classChains.put(cls, chain(cls, packageOf(cls)));
+        }
+    }
+
+    /**
+     * Returns the transformers for the class with the given internal name.
+     */
+    Chain lookup(String internalName) {
+        Chain chain = classChains.get(internalName);
+        if (chain != null) {
+            return chain;
+        }
+        return packageChains.computeIfAbsent(packageOf(internalName), pkg -> chain(null, pkg));
+    }
+
+    private Chain chain(String cls, String pkg) {
+        return new Chain(select(transformers, cls, pkg), select(postTransformers, cls, pkg));
+    }
+
+    private static TransformerStep[] select(TransformerStep[] steps, String cls, String pkg) {
+        List<TransformerStep> selected = new ArrayList<>();
+        for (TransformerStep step : steps) {
+            if (targets(step.targets(), cls, pkg)) {
+                selected.add(step);
+            }
+        }
+        return selected.toArray(new TransformerStep[0]);
+    }
+
+    private static boolean targets(TransformerTargets targets, String cls, String pkg) {
+        if (targets.isAll() || cls != null && targets.getClasses().contains(cls)) {
+            return true;
+        }
+        for (String target : targets.getPackages()) {
+            if (pkg.equals(target) || pkg.startsWith(target) && pkg.charAt(target.length()) == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String packageOf(String internalName) {
+        int slash = internalName.lastIndexOf('/');
+        return slash < 0 ? "" : internalName.substring(0, slash);
+    }
+
+    static TransformerDispatch compile(Collection<TransformerStep> transformers, Collection<TransformerStep> postTransformers) {
+        return new TransformerDispatch(
+            transformers.toArray(new TransformerStep[0]),
+            postTransformers.toArray(new TransformerStep[0])
+        );
+    }
+
+    /**
+     * Linear dispatch, for when transformers are not frozen yet: every transformer is asked for every class.
+     */
+    static Chain all(Collection<TransformerStep> transformers, Collection<TransformerStep> postTransformers) {
+        return new Chain(
+            transformers.toArray(new TransformerStep[0]),
+            postTransformers.toArray(new TransformerStep[0])
+        );
+    }
+
+    static class Chain {
+        final TransformerStep[] transformers;
+        final TransformerStep[] postTransformers;
+
+        Chain(TransformerStep[] transformers, TransformerStep[] postTransformers) {
+            this.transformers = transformers;
+            this.postTransformers = postTransformers;
+        }
+    }
+}
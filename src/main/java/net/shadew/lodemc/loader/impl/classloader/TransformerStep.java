@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.shadew.lodemc.loader.api.transformer.Transformer;
+import net.shadew.lodemc.loader.api.transformer.TransformerTargets;
+import net.shadew.lodemc.loader.api.transformer.TreeTransformer;
+
+/**
+ * A step in the transformer chain, adapting either a byte based {@link Transformer} or a {@link TreeTransformer}.
+ */
+abstract class TransformerStep {
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder modified = new LongAdder();
+
+    abstract Object transformer();
+
+    abstract boolean canTransform(String className);
+
+    abstract TransformerTargets targets();
+
+    abstract TreeTransformer.Result run(String className, ClassTransformation cls);
+
+    /**
+     * Applies this step, returning false when the class must be removed.
+     */
+    boolean apply(String className, ClassTransformation cls) {
+        TreeTransformer.Result result = run(className, cls);
+        applied.increment();
+        if (result != TreeTransformer.Result.UNCHANGED) {
+            modified.increment();
+        }
+        return result != TreeTransformer.Result.REMOVED;
+    }
+
+    /**
+     * The amount of classes this step was applied to.
+     */
+    long applied() {
+        return applied.sum();
+    }
+
+    /**
+     * The amount of classes this step actually modified or removed.
+     */
+    long modified() {
+        return modified.sum();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TransformerStep && ((TransformerStep) obj).transformer() == transformer();
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(transformer());
+    }
+
+    static TransformerStep of(Transformer transformer) {
+        return new TransformerStep() {
+            @Override
+            Object transformer() {
+                return transformer;
+            }
+
+            @Override
+            boolean canTransform(String className) {
+                return transformer.canTransform(className);
+            }
+
+            @Override
+            TransformerTargets targets() {
+                return transformer.getTargets();
+            }
+
+            @Override
+            TreeTransformer.Result run(String className, ClassTransformation cls) {
+                byte[] original = cls.bytes();
+                byte[] bytes = transformer.transformClassBytes(className, original);
+                if (bytes == null) {
+                    return TreeTransformer.Result.REMOVED;
+                }
+
+                // A transformer that copies the class without changing it must not cost us the parsed node
+                if (bytes == original || Arrays.equals(bytes, original)) {
+                    return TreeTransformer.Result.UNCHANGED;
+                }
+                cls.setBytes(bytes);
+                return TreeTransformer.Result.MODIFIED;
+            }
+        };
+    }
+
+    static TransformerStep of(TreeTransformer transformer) {
+        return new TransformerStep() {
+            @Override
+            Object transformer() {
+                return transformer;
+            }
+
+            @Override
+            boolean canTransform(String className) {
+                return transformer.canTransform(className);
+            }
+
+            @Override
+            TransformerTargets targets() {
+                return transformer.getTargets();
+            }
+
+            @Override
+            TreeTransformer.Result run(String className, ClassTransformation cls) {
+                byte[] bytes = cls.currentBytes();
+                if (bytes != null && !transformer.canTransform(className, bytes)) {
+                    return TreeTransformer.Result.UNCHANGED;
+                }
+
+                TreeTransformer.Result result = transformer.transformClassNode(className, cls.node());
+                if (result == TreeTransformer.Result.MODIFIED) {
+                    cls.markModified();
+                }
+                return result;
+            }
+        };
+    }
+}
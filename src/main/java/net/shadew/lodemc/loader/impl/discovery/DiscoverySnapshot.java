@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.discovery;
+
+import com.google.gson.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import net.shadew.lodemc.loader.impl.cache.Fingerprint;
+
+/**
+ * Remembers what discovery found in each mod file of the mods folders, so that a restart with the same mods doesn't
+ * have to do it again. For every jar in a mods folder, it stores the files it includes and the JSON files that were
+ * read from them. A jar's part of the snapshot is used only when its size and modification time, or otherwise its
+ * hash, are still the same.
+ */
+public class DiscoverySnapshot {
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<String, JsonObject> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private DiscoverySnapshot(Path file, Map<String, JsonObject> previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+    /**
+     * Returns what was previously discovered from the given jar, or null if the jar is not in the snapshot or changed
+     * since. The hash of the jar is only computed when its modification time changed.
+     */
+    JarRecord find(Path path, long size, long modified, Supplier<String> hash) {
+        JsonObject entry = previous.get(path.toAbsolutePath().toString());
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            if (entry.get("size").getAsLong() != size) {
+                return null;
+            }
+            String recordedHash = entry.get("hash").getAsString();
+            if (entry.get("modified").getAsLong() != modified && !recordedHash.equals(hash.get())) {
+                // Touched and changed, jars that are only touched (e.g. when the mods folder was copied) are still fine
+                return null;
+            }
+
+            List<FileRecord> files = new ArrayList<>();
+            for (JsonElement element : entry.getAsJsonArray("files")) {
+                JsonObject obj = element.getAsJsonObject();
+                Map<String, JsonElement> json = new LinkedHashMap<>();
+                obj.getAsJsonObject("json").entrySet().forEach(e -> json.put(e.getKey(), e.getValue()));
+                JsonElement fileHash = obj.get("hash");
+                files.add(new FileRecord(
+                    obj.get("path").getAsString(), obj.get("owner").getAsInt(),
+                    fileHash == null ? null : fileHash.getAsString(), json
+                ));
+            }
+            return new JarRecord(recordedHash, files);
+        } catch (RuntimeException exc) {
+            // Malformed entry, or the jar could not be opened to hash it: rediscover the jar
+            return null;
+        }
+    }
+
+    /**
+     * Records the files discovered from a jar in a mods folder, in discovery order. The first file is the jar itself.
+     */
+    void record(Path path, long size, long modified, String hash, List<ModFile> files) {
+        current.put(path.toAbsolutePath().toString(), new Entry(size, modified, hash, files));
+    }
+
+    /**
+     * Writes the snapshot, including all JSON files that were read from the recorded mod files by now.
+     */
+    public void save() {
+        JsonObject root = new JsonObject();
+        root.addProperty("version", VERSION);
+        JsonObject entries = new JsonObject();
+        current.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> entries.add(e.getKey(), e.getValue().toJson()));
+        root.add("entries", entries);
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "discovery", ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    new Gson().toJson(root, writer);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException exc) {
+            System.err.println("Failed to save discovery snapshot");
+            exc.printStackTrace();
+        }
+    }
+
+    public static DiscoverySnapshot load(Path file) {
+        Map<String, JsonObject> previous = new HashMap<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject root = new JsonParser().parse(reader).getAsJsonObject();
+            if (root.get("version").getAsInt() == VERSION) {
+                root.getAsJsonObject("entries").entrySet().forEach(e -> previous.put(e.getKey(), e.getValue().getAsJsonObject()));
+            }
+        } catch (NoSuchFileException exc) {
+            // First start
+        } catch (IOException | RuntimeException exc) {
+            System.err.println("Discovery snapshot is unreadable, discovering all mods again");
+            previous.clear();
+        }
+        return new DiscoverySnapshot(file, previous);
+    }
+
+    /**
+     * A snapshot that is never saved and restores nothing.
+     */
+    public static DiscoverySnapshot empty(Path file) {
+        return new DiscoverySnapshot(file, Collections.emptyMap()) {
+            @Override
+            public void save() {
+            }
+        };
+    }
+
+    static class JarRecord {
+        final String hash;
+        final List<FileRecord> files;
+
+        JarRecord(String hash, List<FileRecord> files) {
+            this.hash = hash;
+            this.files = files;
+        }
+    }
+
+    /**
+     * A file discovered from a jar. The owner is the index of the file that includes it, or -1 for the jar itself.
+     */
+    static class FileRecord {
+        final String path;
+        final int owner;
+        final String hash;
+        final Map<String, JsonElement> json;
+
+        FileRecord(String path, int owner, String hash, Map<String, JsonElement> json) {
+            this.path = path;
+            this.owner = owner;
+            this.hash = hash;
+            this.json = json;
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String hash;
+        final List<ModFile> files;
+
+        Entry(long size, long modified, String hash, List<ModFile> files) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.files = files;
+        }
+
+        JsonObject toJson() {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("size", size);
+            obj.addProperty("modified", modified);
+            obj.addProperty("hash", hash);
+
+            JsonArray array = new JsonArray();
+            for (ModFile file : files) {
+                JsonObject fileObj = new JsonObject();
+                fileObj.addProperty("path", file.getFilePath().toAbsolutePath().toString());
+                fileObj.addProperty("owner", file.getOwner() == null ? -1 : files.indexOf(file.getOwner()));
+                fileObj.addProperty("hash", file.getContentHash());
+
+                JsonObject json = new JsonObject();
+                new TreeMap<>(file.getParsedJson()).forEach(json::add);
+                fileObj.add("json", json);
+                array.add(fileObj);
+            }
+            obj.add("files", array);
+            return obj;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.discovery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import net.shadew.lodemc.loader.impl.cache.Fingerprint;
+
+/**
+ * A read-only view of a jar or zip file. The archive is memory mapped, and its central directory is parsed once into a
+ * table of entry names and offsets. Reading an entry afterwards is a table lookup followed by a copy or inflation of
+ * exactly that entry.
+ * <p>
+ * Archives that are not on the default file system (i.e. nested in other archives) are read into memory instead.
+ */
+public class JarArchive {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int ZIP64_END_HEADER = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final Path path;
+    private final ByteBuffer buf;
+    private final Map<String, Integer> entries;
+    private final Set<String> directories = new HashSet<>();
+    private final String[] names;
+    private final int[] methods;
+    private final int[] offsets;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+    private final int[] crcs;
+
+    private JarArchive(Path path, ByteBuffer buf) throws IOException {
+        this.path = path;
+        this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        int end = findEnd();
+        long count = buf.getShort(end + 10) & 0xFFFF;
+        long cdOffset = buf.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (count == 0xFFFF || cdOffset == 0xFFFFFFFFL) {
+            // Zip64 archive, the actual values are in the zip64 end of central directory record
+            int locator = end - 20;
+            if (locator >= 0 && buf.getInt(locator) == ZIP64_LOCATOR) {
+                int end64 = checkOffset(buf.getLong(locator + 8));
+                if (buf.getInt(end64) != ZIP64_END_HEADER) {
+                    throw new ZipException("Invalid zip64 end of central directory");
+                }
+                count = buf.getLong(end64 + 32);
+                cdOffset = buf.getLong(end64 + 48);
+            }
+        }
+        if (count > Integer.MAX_VALUE) {
+            throw new ZipException("Too many entries");
+        }
+
+        int n = (int) count;
+        entries = new HashMap<>(n * 4 / 3 + 1);
+        names = new String[n];
+        methods = new int[n];
+        offsets = new int[n];
+        compressedSizes = new int[n];
+        sizes = new int[n];
+        crcs = new int[n];
+
+        int off = checkOffset(cdOffset);
+        int files = 0;
+        for (int i = 0; i < n; i++) {
+            if (buf.getInt(off) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory header");
+            }
+
+            int method = buf.getShort(off + 10) & 0xFFFF;
+            int crc = buf.getInt(off + 16);
+            long compressedSize = buf.getInt(off + 20) & 0xFFFFFFFFL;
+            long size = buf.getInt(off + 24) & 0xFFFFFFFFL;
+            int nameLen = buf.getShort(off + 28) & 0xFFFF;
+            int extraLen = buf.getShort(off + 30) & 0xFFFF;
+            int commentLen = buf.getShort(off + 32) & 0xFFFF;
+            long localOffset = buf.getInt(off + 42) & 0xFFFFFFFFL;
+            String name = readName(off + 46, nameLen);
+
+            if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                // Zip64 extended information, only the values that overflowed are present, in this order
+                int extra = off + 46 + nameLen;
+                int extraEnd = extra + extraLen;
+                while (extra + 4 <= extraEnd) {
+                    int tag = buf.getShort(extra) & 0xFFFF;
+                    int len = buf.getShort(extra + 2) & 0xFFFF;
+                    if (tag == 0x0001) {
+                        int field = extra + 4;
+                        if (size == 0xFFFFFFFFL) {
+                            size = buf.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == 0xFFFFFFFFL) {
+                            compressedSize = buf.getLong(field);
+                            field += 8;
+                        }
+                        if (localOffset == 0xFFFFFFFFL) {
+                            localOffset = buf.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + len;
+                }
+            }
+
+            off += 46 + nameLen + extraLen + commentLen;
+
+            addParentDirectories(name);
+            if (name.endsWith("/")) {
+                directories.add(name.substring(0, name.length() - 1));
+                continue;
+            }
+            if (entries.containsKey(name)) {
+                continue; // Like the zip file system, the first entry with a name wins
+            }
+
+            names[files] = name;
+            methods[files] = method;
+            offsets[files] = checkOffset(localOffset);
+            compressedSizes[files] = checkOffset(compressedSize);
+            sizes[files] = checkSize(size);
+            crcs[files] = crc;
+            entries.put(name, files);
+            files++;
+        }
+    }
+
+    private int findEnd() throws ZipException {
+        int limit = Math.max(0, buf.limit() - 22 - 0xFFFF);
+        for (int off = buf.limit() - 22; off >= limit; off--) {
+            if (buf.getInt(off) == END_HEADER) {
+                return off;
+            }
+        }
+        throw new ZipException("Not a zip file");
+    }
+
+    private int checkOffset(long offset) throws ZipException {
+        if (offset < 0 || offset > buf.limit()) {
+            throw new ZipException("Invalid offset or size in archive");
+        }
+        return (int) offset;
+    }
+
+    private static int checkSize(long size) throws ZipException {
+        // Entries inflate into a single array, but can be much larger than the archive itself
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new ZipException("Invalid or too large entry size in archive");
+        }
+        return (int) size;
+    }
+
+    private String readName(int off, int len) {
+        byte[] bytes = new byte[len];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(off);
+        dup.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void addParentDirectories(String name) {
+        for (int slash = name.lastIndexOf('/', name.length() - 2); slash > 0; slash = name.lastIndexOf('/', slash - 1)) {
+            if (!directories.add(name.substring(0, slash))) {
+                break;
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Computes the SHA-256 hash of the entire archive.
+     */
+    public byte[] hash() {
+        MessageDigest digest = Fingerprint.newDigest();
+        digest.update(buf.duplicate());
+        return digest.digest();
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Checks whether the given directory exists in this archive, either as explicit entry or as the parent of another
+     * entry. The name must not end with a slash.
+     */
+    public boolean isDirectory(String name) {
+        return directories.contains(name);
+    }
+
+    /**
+     * Lists the names of all files in this archive, without directories.
+     */
+    public List<String> listFiles() {
+        return Collections.unmodifiableList(Arrays.asList(names).subList(0, entries.size()));
+    }
+
+    /**
+     * Returns the uncompressed size of the given entry, or -1 if there is no such entry.
+     */
+    public long getSize(String name) {
+        Integer entry = entries.get(name);
+        return entry == null ? -1 : sizes[entry];
+    }
+
+    /**
+     * Returns the CRC32 of the given entry as recorded in the central directory, or -1 if there is no such entry.
+     */
+    public long getCrc(String name) {
+        Integer entry = entries.get(name);
+        return entry == null ? -1 : crcs[entry] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Lists the names of the files and directories directly inside the given directory, relative to it and sorted.
+     */
+    public List<String> list(String dir) {
+        String prefix = dir + "/";
+        Set<String> children = new TreeSet<>();
+        for (String name : listFiles()) {
+            if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0) {
+                children.add(name.substring(prefix.length()));
+            }
+        }
+        for (String name : directories) {
+            if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0) {
+                children.add(name.substring(prefix.length()));
+            }
+        }
+        return new ArrayList<>(children);
+    }
+
+    /**
+     * Returns the contents of the given entry, or null if there is no such entry. Stored entries are returned as a
+     * slice of the archive, without copying them.
+     */
+    public ByteBuffer read(String name) throws IOException {
+        Integer entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (methods[entry] == STORED) {
+            return data(entry, sizes[entry]).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(inflate(entry));
+    }
+
+    /**
+     * Returns the contents of the given entry in a new array, or null if there is no such entry.
+     */
+    public byte[] readBytes(String name) throws IOException {
+        Integer entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (methods[entry] == STORED) {
+            byte[] bytes = new byte[sizes[entry]];
+            data(entry, sizes[entry]).get(bytes);
+            return bytes;
+        }
+        return inflate(entry);
+    }
+
+    /**
+     * Opens a stream over the given entry, or returns null if there is no such entry.
+     */
+    public InputStream open(String name) throws IOException {
+        ByteBuffer data = read(name);
+        return data == null ? null : new ByteBufferInputStream(data);
+    }
+
+    private ByteBuffer data(int entry, int length) throws ZipException {
+        int off = offsets[entry];
+        if (off + 30 > buf.limit() || buf.getInt(off) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header for " + names[entry]);
+        }
+
+        // The local header may have a different extra field than the central directory
+        int start = off + 30 + (buf.getShort(off + 26) & 0xFFFF) + (buf.getShort(off + 28) & 0xFFFF);
+        if (start + length > buf.limit()) {
+            throw new ZipException("Truncated entry " + names[entry]);
+        }
+
+        ByteBuffer dup = buf.duplicate();
+        dup.position(start);
+        dup.limit(start + length);
+        return dup.slice();
+    }
+
+    private byte[] inflate(int entry) throws IOException {
+        if (methods[entry] != DEFLATED) {
+            throw new ZipException("Unsupported compression method " + methods[entry] + " for " + names[entry]);
+        }
+
+        ByteBuffer data = data(entry, compressedSizes[entry]);
+        byte[] input = scratch(data.remaining());
+        data.get(input, 0, data.remaining());
+
+        byte[] out = new byte[sizes[entry]];
+        Inflater inflater = INFLATER.get();
+        try {
+            // Raw deflate streams may need one extra byte of input to finish
+            inflater.setInput(input, 0, compressedSizes[entry] + 1);
+            int len = 0;
+            while (len < out.length) {
+                int n = inflater.inflate(out, len, out.length - len);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                len += n;
+            }
+            if (len != out.length) {
+                throw new ZipException("Invalid entry size for " + names[entry]);
+            }
+        } catch (DataFormatException exc) {
+            throw new ZipException("Invalid deflate data for " + names[entry] + ": " + exc.getMessage());
+        } finally {
+            inflater.reset();
+        }
+        return out;
+    }
+
+    private static byte[] scratch(int size) {
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < size + 1) {
+            scratch = new byte[Math.max(size + 1, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        scratch[size] = 0;
+        return scratch;
+    }
+
+    public static JarArchive open(Path path) throws IOException {
+        if (path.getFileSystem() != FileSystems.getDefault()) {
+            return new JarArchive(path, ByteBuffer.wrap(Files.readAllBytes(path)));
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException("Archive is too large to be mapped: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            return new JarArchive(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
@@ -17,26 +17,30 @@
 package net.shadew.lodemc.loader.impl.discovery;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import net.shadew.lodemc.loader.api.LoaderException;
 import net.shadew.lodemc.loader.api.LodeLoader;
 import net.shadew.lodemc.loader.impl.LoaderPhase;
+import net.shadew.lodemc.loader.impl.LoaderThreads;
+import net.shadew.lodemc.loader.impl.LodeLoaderImpl;
 import net.shadew.lodemc.loader.impl.PhaseStatus;
+import net.shadew.lodemc.loader.impl.cache.InclusionCache;
 
 public class ModDiscoveryPhase implements LoaderPhase<List<ModFile>> {
     public static final ModDiscoveryPhase INSTANCE = new ModDiscoveryPhase();
 
-    private final List<ModFile> pendingFiles = new ArrayList<>();
     private final List<ModFile> files = new ArrayList<>();
     private final Map<String, List<LoaderException>> failedPaths = new LinkedHashMap<>();
     private PhaseStatus status = PhaseStatus.SUCCESS;
+    private InclusionCache inclusionCache;
+    private DiscoverySnapshot snapshot;
 
     @Override
     public String name() {
@@ -58,50 +62,94 @@ public class ModDiscoveryPhase implements LoaderPhase<List<ModFile>> {
         return failedPaths;
     }
 
+    public DiscoverySnapshot getSnapshot() {
+        return snapshot;
+    }
+
     @Override
     public void run(LodeLoader loader) {
+        Path cacheDir = LodeLoaderImpl.instance.getCacheDirectory();
+        inclusionCache = new InclusionCache(cacheDir.resolve("inclusions"));
+        snapshot = System.getProperties().containsKey("lode.cache.disable")
+                   ? DiscoverySnapshot.empty(cacheDir.resolve("discovery.json"))
+                   : DiscoverySnapshot.load(cacheDir.resolve("discovery.json"));
+
+        // Open all mod files of all folders concurrently, and only then collect them in order
+        List<List<DiscoverTask>> folders = new ArrayList<>();
         for (Path folder : loader.getModsFolders()) {
-            discover(folder);
+            List<DiscoverTask> tasks = list(folder, null);
+            tasks.forEach(task -> LoaderThreads.pool().execute(task));
+            folders.add(tasks);
+        }
+        for (List<DiscoverTask> tasks : folders) {
+            collect(tasks);
         }
     }
 
-    private void discover(Path modsPath) {
-        discover(modsPath, null);
+    private void collect(List<DiscoverTask> tasks) {
+        // Breadth first, so that mod files come before the files they include
+        Deque<Node> pending = new ArrayDeque<>();
+        tasks.forEach(task -> pending.add(task.join()));
 
-        while (!pendingFiles.isEmpty()) {
-            ModFile file = pendingFiles.remove(0);
+        // Libraries included by multiple mods are extracted to the same file, these should be loaded only once
+        Set<Path> seen = new HashSet<>();
+        files.forEach(file -> seen.add(file.getFilePath()));
 
-            Path inclusionsPath = file.findFile("inclusions/");
-            try {
-                discover(inclusionsPath, file);
-                files.add(file);
-            } catch (LoaderException exc) {
-                handleProblem(file.getContainer().getFilePath(), exc);
+        while (!pending.isEmpty()) {
+            Node node = pending.poll();
+            if (node.file == null) {
+                handleProblem(node.path, node.problem);
+            } else if (node.problem != null) {
+                handleProblem(node.file.getContainer().getFilePath(), node.problem);
+            } else if (seen.add(node.file.getFilePath())) {
+                files.add(node.file);
+                pending.addAll(node.children);
             }
         }
     }
 
-    private void discover(Path path, ModFile owner) {
+    private List<DiscoverTask> list(Path path, ModFile owner) {
         if (!Files.exists(path)) {
-            return;
+            return Collections.emptyList();
         }
         try (Stream<Path> files = Files.list(path)) {
-            files.forEach(filePath -> {
-                try {
-                    pendingFiles.add(new ModFile(filePath, owner));
-                } catch (LoaderException exc) {
-                    if (owner == null)
-                        handleProblem(filePath, exc);
-                    else // Rethrow, discover(Path) will catch it and handle it for the correct path
-                        throw exc;
-                }
-            });
+            // Directory listings come in no particular order, sort them so that mods load in the same order every time
+            return files.sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                        .map(file -> new DiscoverTask(file, owner, null))
+                        .collect(Collectors.toList());
         } catch (IOException exc) {
             throw new LoaderException("Exception locating files in directory " + path, exc).problem(owner);
         }
     }
 
-    private void handleProblem(Path path, LoaderException problem) {
+    private List<DiscoverTask> inclusions(ModFile file) {
+        JarArchive archive = file.getArchive();
+        if (archive == null) {
+            return list(file.findFile("inclusions/"), file);
+        }
+
+        // Included jars are extracted, so that they can be read like any other jar instead of through the outer jar
+        List<DiscoverTask> tasks = new ArrayList<>();
+        for (String name : archive.list("inclusions")) {
+            String entry = "inclusions/" + name;
+            if (archive.isDirectory(entry)) {
+                tasks.add(new DiscoverTask(file.findFile(entry), file, null));
+                continue;
+            }
+
+            try {
+                // Extracted files are named after their hash, so we know it without hashing the file again
+                Path extracted = inclusionCache.extract(archive.read(entry));
+                String hash = extracted.getFileName().toString();
+                tasks.add(new DiscoverTask(extracted, file, hash.substring(0, hash.length() - 4)));
+            } catch (IOException exc) {
+                throw new LoaderException("Exception extracting " + entry, exc).critical().problem(file);
+            }
+        }
+        return tasks;
+    }
+
+    private synchronized void handleProblem(Path path, LoaderException problem) {
         failedPaths.computeIfAbsent(path.toString(), k -> new ArrayList<>()).add(problem);
 
         PhaseStatus pendingStatus = problem.isCritical() ? PhaseStatus.FATAL : PhaseStatus.WARNING;
@@ -109,4 +157,160 @@ public class ModDiscoveryPhase implements LoaderPhase<List<ModFile>> {
             status = pendingStatus;
         }
     }
+
+    private static class Node {
+        final Path path;
+        final List<Node> children = new ArrayList<>();
+        ModFile file;
+        LoaderException problem;
+
+        Node(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Opens a mod file and, concurrently, all the mod files it includes.
+     */
+    private class DiscoverTask extends RecursiveTask<Node> {
+        private final Path path;
+        private final ModFile owner;
+        private final String hash;
+
+        DiscoverTask(Path path, ModFile owner, String hash) {
+            this.path = path;
+            this.owner = owner;
+            this.hash = hash;
+        }
+
+        @Override
+        protected Node compute() {
+            if (owner != null || !Files.isRegularFile(path)) {
+                return discover(null);
+            }
+
+            // A jar in a mods folder, which we may have discovered before
+            long size, modified;
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                size = attrs.size();
+                modified = attrs.lastModifiedTime().toMillis();
+            } catch (IOException exc) {
+                return discover(null);
+            }
+
+            ModFile[] jar = new ModFile[1];
+            DiscoverySnapshot.JarRecord record = snapshot.find(path, size, modified, () -> {
+                jar[0] = new ModFile(path, null);
+                return jar[0].getContentHash();
+            });
+            if (record != null) {
+                Node node = restore(record, jar[0]);
+                if (node != null) {
+                    snapshot.record(path, size, modified, record.hash, flatten(node));
+                    return node;
+                }
+            }
+
+            Node node = discover(jar[0]);
+            List<ModFile> files = flatten(node);
+            if (files != null && node.file.getArchive() != null) {
+                snapshot.record(path, size, modified, node.file.getContentHash(), files);
+            }
+            return node;
+        }
+
+        private Node restore(DiscoverySnapshot.JarRecord record, ModFile jar) {
+            List<DiscoverySnapshot.FileRecord> records = record.files;
+            Node[] nodes = new Node[records.size()];
+            try {
+                for (int i = 0; i < nodes.length; i++) {
+                    DiscoverySnapshot.FileRecord file = records.get(i);
+                    if (i == 0 ? file.owner != -1 : file.owner < 0 || file.owner >= i) {
+                        return null;
+                    }
+
+                    Path filePath = i == 0 ? path : Paths.get(file.path);
+                    Node node = new Node(filePath);
+                    if (i == 0) {
+                        node.file = jar != null ? jar : new ModFile(filePath, null);
+                        node.file.setContentHash(record.hash);
+                    } else {
+                        // Extracted inclusions may have been removed from the cache in the meantime
+                        if (!Files.isRegularFile(filePath)) {
+                            return null;
+                        }
+                        node.file = new ModFile(filePath, nodes[file.owner].file);
+                        nodes[file.owner].children.add(node);
+                    }
+                    file.json.forEach(node.file::restoreJson);
+                    if (file.hash != null) {
+                        node.file.setContentHash(file.hash);
+                    }
+                    nodes[i] = node;
+                }
+            } catch (LoaderException | InvalidPathException exc) {
+                return null;
+            }
+            return nodes.length == 0 ? null : nodes[0];
+        }
+
+        private Node discover(ModFile opened) {
+            Node node = new Node(path);
+            try {
+                node.file = opened != null ? opened : new ModFile(path, owner);
+                if (hash != null) {
+                    node.file.setContentHash(hash);
+                }
+            } catch (LoaderException exc) {
+                node.problem = exc;
+                return node;
+            }
+
+            try {
+                if (node.file.hasDirectory("inclusions")) {
+                    List<DiscoverTask> tasks = inclusions(node.file);
+                    invokeAll(tasks);
+                    for (DiscoverTask task : tasks) {
+                        Node child = task.join();
+                        if (child.file == null) {
+                            // An included file that can't be opened fails the file that includes it
+                            throw child.problem;
+                        }
+                        node.children.add(child);
+                    }
+                }
+            } catch (LoaderException exc) {
+                node.problem = exc;
+                node.children.clear();
+            } catch (UncheckedIOException exc) {
+                node.problem = new LoaderException("Exception opening " + path, exc.getCause()).critical().problem(node.file);
+                node.children.clear();
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Lists the files of a discovered tree breadth first, or returns null if the tree can't be put in the snapshot
+     * because it has problems or files that aren't on disk. Trees with problems are discovered again on every start, so
+     * that their problems are reported again.
+     */
+    private static List<ModFile> flatten(Node root) {
+        List<ModFile> files = new ArrayList<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.poll();
+            if (node.file == null || node.problem != null) {
+                return null;
+            }
+            if (node.file.getFilePath().getFileSystem() != FileSystems.getDefault()) {
+                return null;
+            }
+            files.add(node.file);
+            pending.addAll(node.children);
+        }
+        return files;
+    }
 }
@@ -16,23 +16,40 @@
 
 package net.shadew.lodemc.loader.impl.discovery;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import net.shadew.lodemc.loader.api.LoaderException;
 import net.shadew.lodemc.loader.api.transformer.ClassPath;
+import net.shadew.lodemc.loader.impl.cache.Fingerprint;
 
 public class ModFile implements ClassPath {
-    private final FileSystem fs;
     private final Path filePath;
-    private final Path root;
+    private final JarArchive archive;
     private final ModFile owner;
+    private final URLStreamHandler urlHandler;
+    private final String urlPrefix;
+    private final Map<String, JsonElement> jsonCache = new ConcurrentHashMap<>();
+    private volatile String contentHash;
+    private volatile FileSystem fs;
+    private volatile Path root;
     private ModFile container;
 
     public ModFile(Path path, ModFile owner) {
@@ -42,13 +59,19 @@ public class ModFile implements ClassPath {
         if (Files.isDirectory(path)) {
             fs = path.getFileSystem();
             root = path;
+            archive = null;
+            urlHandler = null;
+            urlPrefix = null;
         } else {
             try {
-                fs = FileSystems.newFileSystem(path, null);
-                root = fs.getPath("/");
+                archive = JarArchive.open(path);
             } catch (Exception exc) {
                 throw new LoaderException("Exception instantiating ModFile", exc).critical().problem(this);
             }
+
+            // Resources get jar URLs, but they are served from our own archive
+            urlPrefix = path.toUri() + "!/";
+            urlHandler = new ArchiveURLHandler(archive, urlPrefix.length());
         }
 
         container = owner;
@@ -68,7 +91,34 @@ public class ModFile implements ClassPath {
         return owner;
     }
 
+    /**
+     * Returns the archive of this mod file, or null if this mod file is a directory.
+     */
+    public JarArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Returns the SHA-256 hash of this mod file's archive in hex, or null if this mod file is a directory. This is
+     * usually known from discovery, otherwise the archive is hashed.
+     */
+    public String getContentHash() {
+        if (archive == null) {
+            return null;
+        }
+        String hash = contentHash;
+        if (hash == null) {
+            contentHash = hash = Fingerprint.toHex(archive.hash());
+        }
+        return hash;
+    }
+
+    void setContentHash(String hash) {
+        contentHash = hash;
+    }
+
     public FileSystem getFileSystem() {
+        openFileSystem();
         return fs;
     }
 
@@ -77,13 +127,86 @@ public class ModFile implements ClassPath {
     }
 
     public Path findFile(String filePath) {
-        return root.resolve(filePath);
+        return getRoot().resolve(filePath);
     }
 
+    /**
+     * Returns the root of this mod file as a path. Jars are only opened as a file system when this is needed, all class
+     * path access goes through the archive directly.
+     */
     public Path getRoot() {
+        openFileSystem();
         return root;
     }
 
+    private void openFileSystem() {
+        if (root != null) {
+            return;
+        }
+        synchronized (this) {
+            if (root == null) {
+                try {
+                    fs = FileSystems.newFileSystem(filePath, null);
+                } catch (IOException exc) {
+                    throw new UncheckedIOException(exc);
+                }
+                root = fs.getPath("/");
+            }
+        }
+    }
+
+    public boolean hasFile(String path) {
+        if (archive != null) {
+            return archive.contains(path);
+        }
+        return Files.isRegularFile(root.resolve(path));
+    }
+
+    public boolean hasDirectory(String path) {
+        if (archive != null) {
+            return archive.isDirectory(path);
+        }
+        return Files.isDirectory(root.resolve(path));
+    }
+
+    /**
+     * Opens the given file in this mod file, or returns null when it doesn't exist.
+     */
+    public InputStream openFile(String path) throws IOException {
+        if (archive != null) {
+            return archive.open(path);
+        }
+        Path file = root.resolve(path);
+        return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+    }
+
+    /**
+     * Reads and parses the given JSON file in this mod file. Parsed files are remembered, and may already be known from
+     * the discovery snapshot, in which case the file isn't read at all.
+     */
+    public JsonElement readJson(String path) throws IOException {
+        JsonElement json = jsonCache.get(path);
+        if (json == null) {
+            InputStream in = openFile(path);
+            if (in == null) {
+                throw new FileNotFoundException(path);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                json = new JsonParser().parse(reader);
+            }
+            jsonCache.put(path, json);
+        }
+        return json;
+    }
+
+    Map<String, JsonElement> getParsedJson() {
+        return jsonCache;
+    }
+
+    void restoreJson(String path, JsonElement json) {
+        jsonCache.put(path, json);
+    }
+
     @Override
     public String toString() {
         return "ModFile [ filePath: " + filePath + ", container: " + container + "]";
@@ -91,38 +214,97 @@ public class ModFile implements ClassPath {
 
     @Override
     public Iterable<URL> findSources(String path) {
-        class Itr implements Iterator<URL> {
-            private URL url;
-
-            Itr(URL url) {
-                this.url = url;
+        URL url = null;
+        if (archive != null) {
+            if (archive.contains(path)) {
+                try {
+                    url = new URL("jar", "", -1, urlPrefix + path, urlHandler);
+                } catch (MalformedURLException e) {
+                    e.printStackTrace();
+                }
             }
-
-            @Override
-            public boolean hasNext() {
-                return url != null;
+        } else {
+            Path file = findFile(path);
+            if (Files.exists(file) && Files.isRegularFile(file)) {
+                try {
+                    url = file.toUri().toURL();
+                } catch (MalformedURLException e) {
+                    e.printStackTrace();
+                }
             }
+        }
+        return url == null ? Collections.emptyList() : Collections.singletonList(url);
+    }
 
-            @Override
-            public URL next() {
-                if (url == null) throw new NoSuchElementException();
-                URL out = url;
-                url = null;
-                return out;
+    @Override
+    public byte[] loadClassBytes(String className) throws ClassNotFoundException {
+        String path = className + ".class";
+        try {
+            if (archive != null) {
+                byte[] bytes = archive.readBytes(path);
+                if (bytes != null) {
+                    return bytes;
+                }
+            } else {
+                Path file = root.resolve(path);
+                if (Files.isRegularFile(file)) {
+                    return Files.readAllBytes(file);
+                }
             }
+        } catch (IOException exc) {
+            throw new ClassNotFoundException(className, exc);
         }
+        throw new ClassNotFoundException(className);
+    }
 
-        URL url = null;
-        Path file = findFile(path);
-        if (Files.exists(file) && Files.isRegularFile(file)) {
-            try {
-                url = file.toUri().toURL();
-            } catch (MalformedURLException e) {
-                e.printStackTrace();
-            }
+    @Override
+    public Iterable<String> listFiles() {
+        if (archive != null) {
+            return archive.listFiles();
+        }
+
+        List<String> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(Files::isRegularFile)
+                 .forEach(path -> files.add(root.relativize(path).toString().replace('\\', '/')));
+        } catch (IOException | UncheckedIOException exc) {
+            return null;
+        }
+        return files;
+    }
+
+    private static class ArchiveURLHandler extends URLStreamHandler {
+        private final JarArchive archive;
+        private final int prefixLength;
+
+        ArchiveURLHandler(JarArchive archive, int prefixLength) {
+            this.archive = archive;
+            this.prefixLength = prefixLength;
         }
 
-        URL finalUrl = url;
-        return () -> new Itr(finalUrl);
+        @Override
+        protected URLConnection openConnection(URL url) {
+            String name = url.getFile().substring(prefixLength);
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    InputStream in = archive.open(name);
+                    if (in == null) {
+                        throw new IOException("No such entry: " + name);
+                    }
+                    return in;
+                }
+
+                @Override
+                public int getContentLength() {
+                    return -1;
+                }
+            };
+        }
     }
 }
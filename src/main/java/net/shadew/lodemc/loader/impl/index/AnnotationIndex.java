@@ -0,0 +1,345 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.index;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A compact, binary index of all annotations in an archive, so that an archive doesn't have to be scanned when it was
+ * scanned before. The index is tied to the archive it was built from by the hash of that archive. Indices embedded in
+ * mod jars at build time, at {@link #EMBEDDED_PATH}, are instead tied to the {@link ClassFilesHash} of the jar.
+ * <p>
+ * The format is as follows, all numbers big endian:
+ * <pre>
+ * int      magic ('LDAI')
+ * int      version
+ * string   archive hash
+ * int      string count, followed by that many strings
+ * int      element count, followed by that many elements
+ * int      CRC32 of everything before it
+ * </pre>
+ * Strings in the string table are an int byte length followed by UTF-8 bytes. Everywhere else, strings are int indices
+ * into the string table.
+ */
+public class AnnotationIndex {
+    public static final int MAGIC = 0x4C444149;
+    public static final int VERSION = 1;
+    public static final String EMBEDDED_PATH = "META-INF/lode/index.bin";
+
+    private final String archiveHash;
+    private final List<IndexedElement> elements;
+
+    public AnnotationIndex(String archiveHash, List<IndexedElement> elements) {
+        this.archiveHash = archiveHash;
+        this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+    }
+
+    public String getArchiveHash() {
+        return archiveHash;
+    }
+
+    public List<IndexedElement> getElements() {
+        return elements;
+    }
+
+    public byte[] toByteArray() {
+        Writer writer = new Writer(new StringTable());
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(elements.size());
+            for (IndexedElement element : elements) {
+                writer.writeElement(out, element);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            writeString(data, archiveHash);
+            data.writeInt(writer.strings.size());
+            for (int i = 0; i < writer.strings.size(); i++) {
+                writeString(data, writer.strings.get(i));
+            }
+            body.writeTo(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            data.writeInt((int) crc.getValue());
+            return bytes.toByteArray();
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc); // Can't happen, we write to memory
+        }
+    }
+
+    /**
+     * Reads an index, checking that it is complete and of the current version.
+     *
+     * @throws IOException When the index is invalid, outdated or corrupt
+     */
+    public static AnnotationIndex read(byte[] bytes) throws IOException {
+        if (bytes.length < 12) {
+            throw new IOException("Truncated annotation index");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an annotation index");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Annotation index has version " + version + ", expected " + VERSION);
+        }
+
+        in.mark(0);
+        in.skip(bytes.length - 12);
+        if (in.readInt() != (int) crc.getValue()) {
+            throw new IOException("Annotation index is corrupt");
+        }
+        in.reset();
+
+        try {
+            String hash = readString(in);
+            StringTable strings = new StringTable();
+            for (int i = 0, count = in.readInt(); i < count; i++) {
+                if (strings.index(readString(in)) != i) {
+                    throw new IOException("Annotation index has duplicate strings");
+                }
+            }
+
+            Reader reader = new Reader(strings);
+            int count = in.readInt();
+            List<IndexedElement> elements = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                elements.add(reader.readElement(in));
+            }
+            if (in.available() != 4) {
+                throw new IOException("Annotation index has trailing data");
+            }
+            return new AnnotationIndex(hash, elements);
+        } catch (EOFException | RuntimeException exc) {
+            throw new IOException("Annotation index is corrupt", exc);
+        }
+    }
+
+    /**
+     * Packs an annotation into a byte array, in the same format as the index uses, with strings referring to the given
+     * table. This is a lot smaller than the annotation node itself, and can be unpacked with {@link #unpackAnnotation}
+     * whenever it's needed.
+     */
+    public static byte[] packAnnotation(AnnotationNode annotation, StringTable strings) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new Writer(strings).writeAnnotation(new DataOutputStream(bytes), annotation);
+            return bytes.toByteArray();
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc); // Can't happen, we write to memory
+        }
+    }
+
+    public static AnnotationNode unpackAnnotation(byte[] packed, StringTable strings) {
+        try {
+            return new Reader(strings).readAnnotation(new DataInputStream(new ByteArrayInputStream(packed)));
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc); // Can't happen, we packed it ourselves
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > in.available()) {
+            throw new IOException("Annotation index is corrupt");
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Writer {
+        final StringTable strings;
+
+        Writer(StringTable strings) {
+            this.strings = strings;
+        }
+
+        void writeString(DataOutputStream out, String str) throws IOException {
+            out.writeInt(strings.index(str));
+        }
+
+        void writeElement(DataOutputStream out, IndexedElement element) throws IOException {
+            out.writeByte(element.getKind().ordinal());
+            writeString(out, element.getPath());
+            writeString(out, element.getOwner());
+            out.writeInt(element.getOwnerAccess());
+            writeString(out, element.getName());
+            writeString(out, element.getDesc());
+            out.writeInt(element.getAccess());
+            writeAnnotation(out, element.getAnnotation());
+        }
+
+        void writeAnnotation(DataOutputStream out, AnnotationNode annotation) throws IOException {
+            writeString(out, annotation.desc);
+            List<Object> values = annotation.values == null ? Collections.emptyList() : annotation.values;
+            out.writeInt(values.size() / 2);
+            for (int i = 0; i < values.size(); i += 2) {
+                writeString(out, (String) values.get(i));
+                writeValue(out, values.get(i + 1));
+            }
+        }
+
+        void writeValue(DataOutputStream out, Object value) throws IOException {
+            if (value instanceof String) {
+                out.writeByte('s');
+                writeString(out, (String) value);
+            } else if (value instanceof Integer) {
+                out.writeByte('I');
+                out.writeInt((Integer) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte('Z');
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Byte) {
+                out.writeByte('B');
+                out.writeByte((Byte) value);
+            } else if (value instanceof Character) {
+                out.writeByte('C');
+                out.writeChar((Character) value);
+            } else if (value instanceof Short) {
+                out.writeByte('S');
+                out.writeShort((Short) value);
+            } else if (value instanceof Long) {
+                out.writeByte('J');
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                out.writeByte('F');
+                out.writeFloat((Float) value);
+            } else if (value instanceof Double) {
+                out.writeByte('D');
+                out.writeDouble((Double) value);
+            } else if (value instanceof Type) {
+                out.writeByte('c');
+                writeString(out, ((Type) value).getDescriptor());
+            } else if (value instanceof String[]) {
+                String[] enumValue = (String[]) value;
+                out.writeByte('e');
+                writeString(out, enumValue[0]);
+                writeString(out, enumValue[1]);
+            } else if (value instanceof AnnotationNode) {
+                out.writeByte('@');
+                writeAnnotation(out, (AnnotationNode) value);
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.writeByte('[');
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    writeValue(out, element);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown annotation value " + value);
+            }
+        }
+    }
+
+    private static class Reader {
+        final StringTable strings;
+
+        Reader(StringTable strings) {
+            this.strings = strings;
+        }
+
+        String readString(DataInputStream in) throws IOException {
+            return strings.get(in.readInt());
+        }
+
+        IndexedElement readElement(DataInputStream in) throws IOException {
+            IndexedElement.Kind kind = IndexedElement.Kind.values()[in.readUnsignedByte()];
+            String path = readString(in);
+            String owner = readString(in);
+            int ownerAccess = in.readInt();
+            String name = readString(in);
+            String desc = readString(in);
+            int access = in.readInt();
+            AnnotationNode annotation = readAnnotation(in);
+            return new IndexedElement(kind, path, owner, ownerAccess, name, desc, access, annotation);
+        }
+
+        AnnotationNode readAnnotation(DataInputStream in) throws IOException {
+            AnnotationNode annotation = new AnnotationNode(readString(in));
+            int count = in.readInt();
+            if (count > 0) {
+                annotation.values = new ArrayList<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    annotation.values.add(readString(in));
+                    annotation.values.add(readValue(in));
+                }
+            }
+            return annotation;
+        }
+
+        Object readValue(DataInputStream in) throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 's':
+                    return readString(in);
+                case 'I':
+                    return in.readInt();
+                case 'Z':
+                    return in.readBoolean();
+                case 'B':
+                    return in.readByte();
+                case 'C':
+                    return in.readChar();
+                case 'S':
+                    return in.readShort();
+                case 'J':
+                    return in.readLong();
+                case 'F':
+                    return in.readFloat();
+                case 'D':
+                    return in.readDouble();
+                case 'c':
+                    return Type.getType(readString(in));
+                case 'e':
+                    return new String[] {readString(in), readString(in)};
+                case '@':
+                    return readAnnotation(in);
+                case '[':
+                    int size = in.readInt();
+                    List<Object> list = new ArrayList<>(Math.min(size, in.available()));
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue(in));
+                    }
+                    return list;
+                default:
+                    throw new IOException("Unknown annotation value tag " + tag);
+            }
+        }
+    }
+}
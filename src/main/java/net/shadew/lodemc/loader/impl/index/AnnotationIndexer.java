@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.index;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import net.shadew.lodemc.loader.impl.ClassFileUtil;
+
+/**
+ * Builds an {@link AnnotationIndex} from the class files of an archive. Annotations are indexed per class in this
+ * order: class annotations, then method annotations and then field annotations, visible annotations before invisible
+ * ones.
+ */
+public class AnnotationIndexer {
+    private static final byte[] VISIBLE_ANNOTATIONS = ClassFileUtil.utf8("RuntimeVisibleAnnotations");
+    private static final byte[] INVISIBLE_ANNOTATIONS = ClassFileUtil.utf8("RuntimeInvisibleAnnotations");
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private final List<IndexedElement> elements = new ArrayList<>();
+    private final Set<String> annotations;
+    private final byte[][] prefilter;
+
+    /**
+     * Creates an indexer that indexes all annotations.
+     */
+    public AnnotationIndexer() {
+        this(null);
+    }
+
+    /**
+     * Creates an indexer that only indexes the annotations with the given descriptors, or all annotations when null.
+     */
+    public AnnotationIndexer(Set<String> annotations) {
+        this.annotations = annotations;
+        this.prefilter = annotations == null
+                         ? new byte[][] {VISIBLE_ANNOTATIONS, INVISIBLE_ANNOTATIONS}
+                         : annotations.stream().map(desc -> desc.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    }
+
+    public void indexClass(String path, byte[] classFile) {
+        // Most classes have none of the annotations we look for, these don't need to be parsed: an annotation can't
+        // be used without its descriptor in the constant pool
+        if (!ClassFileUtil.containsUtf8(classFile, prefilter)) {
+            return;
+        }
+        new ClassReader(classFile).accept(new Scanner(path), PARSING_OPTIONS);
+    }
+
+    /**
+     * Appends the elements indexed by another indexer, as if its classes were indexed by this one.
+     */
+    public void append(AnnotationIndexer other) {
+        elements.addAll(other.elements);
+    }
+
+    public AnnotationIndex build(String archiveHash) {
+        return new AnnotationIndex(archiveHash, elements);
+    }
+
+    private class Scanner extends ClassVisitor {
+        private final String path;
+        private final List<IndexedElement> methods = new ArrayList<>();
+        private final List<IndexedElement> fields = new ArrayList<>();
+        private String name;
+        private int access;
+
+        Scanner(String path) {
+            super(Opcodes.ASM8);
+            this.path = path;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.name = name;
+            this.access = access;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            String classDesc = Type.getObjectType(name).getDescriptor();
+            return add(elements, IndexedElement.Kind.CLASS, name, classDesc, access, descriptor);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM8) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+                    return add(methods, IndexedElement.Kind.METHOD, name, descriptor, access, annotation);
+                }
+            };
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            return new FieldVisitor(Opcodes.ASM8) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+                    return add(fields, IndexedElement.Kind.FIELD, name, descriptor, access, annotation);
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            // The class file lists fields before methods, but methods are indexed first
+            elements.addAll(methods);
+            elements.addAll(fields);
+        }
+
+        private AnnotationVisitor add(List<IndexedElement> list, IndexedElement.Kind kind, String name, String desc, int access, String annotation) {
+            if (annotations != null && !annotations.contains(annotation)) {
+                return null;
+            }
+            AnnotationNode node = new AnnotationNode(annotation);
+            list.add(new IndexedElement(kind, path, this.name, this.access, name, desc, access, node));
+            return node;
+        }
+    }
+}
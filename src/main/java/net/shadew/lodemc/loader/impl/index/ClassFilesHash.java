@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.index;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.shadew.lodemc.loader.impl.cache.Fingerprint;
+
+/**
+ * Hashes a set of class files by their names, sizes and CRC32 checksums. A jar records these in its central directory,
+ * so an index embedded in a jar can be checked against the classes next to it without reading any of them.
+ */
+public class ClassFilesHash {
+    private final Map<String, long[]> files = new TreeMap<>();
+
+    public void add(String path, long size, long crc) {
+        files.put(path, new long[] {size, crc});
+    }
+
+    public String finish() {
+        Fingerprint fingerprint = new Fingerprint();
+        files.forEach((path, file) -> fingerprint.add(path).add(file[0]).add(file[1]));
+        return Fingerprint.toHex(fingerprint.finish());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.index;
+
+import org.objectweb.asm.tree.AnnotationNode;
+
+/**
+ * An annotation on a class, method or field, as stored in an {@link AnnotationIndex}.
+ */
+public class IndexedElement {
+    private final Kind kind;
+    private final String path;
+    private final String owner;
+    private final int ownerAccess;
+    private final String name;
+    private final String desc;
+    private final int access;
+    private final AnnotationNode annotation;
+
+    public IndexedElement(Kind kind, String path, String owner, int ownerAccess, String name, String desc, int access, AnnotationNode annotation) {
+        this.kind = kind;
+        this.path = path;
+        this.owner = owner;
+        this.ownerAccess = ownerAccess;
+        this.name = name;
+        this.desc = desc;
+        this.access = access;
+        this.annotation = annotation;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The path of the class file in its archive.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * The internal name of the annotated class, or of the class declaring the annotated member.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getOwnerAccess() {
+        return ownerAccess;
+    }
+
+    /**
+     * The name of the annotated member, or the internal name of the annotated class.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The descriptor of the annotated member, or of the annotated class.
+     */
+    public String getDesc() {
+        return desc;
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    /**
+     * The annotation, with its values in the form ASM uses.
+     */
+    public AnnotationNode getAnnotation() {
+        return annotation;
+    }
+
+    public enum Kind {
+        CLASS,
+        METHOD,
+        FIELD
+    }
+}
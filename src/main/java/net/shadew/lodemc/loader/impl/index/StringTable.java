@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of unique strings, referred to by their index. Not thread safe while strings are added. Once no more strings
+ * are added, the table can be frozen to an array of its strings.
+ */
+public class StringTable {
+    private List<String> strings = new ArrayList<>();
+    private Map<String, Integer> indices = new HashMap<>();
+    private volatile String[] frozen;
+
+    /**
+     * Returns the index of the given string, adding it to the table if it's not in there yet.
+     *
+     * @throws IllegalStateException When the table is frozen
+     */
+    public int index(String str) {
+        if (indices == null) {
+            throw new IllegalStateException("String table is frozen");
+        }
+
+        Integer index = indices.get(str);
+        if (index == null) {
+            index = strings.size();
+            strings.add(str);
+            indices.put(str, index);
+        }
+        return index;
+    }
+
+    public String get(int index) {
+        String[] frozen = this.frozen;
+        return frozen != null ? frozen[index] : strings.get(index);
+    }
+
+    public int size() {
+        String[] frozen = this.frozen;
+        return frozen != null ? frozen.length : strings.size();
+    }
+
+    /**
+     * Drops the lookup map and keeps only an array of the strings, after which no strings can be added anymore.
+     */
+    public void freeze() {
+        if (frozen == null) {
+            frozen = strings.toArray(new String[0]);
+            strings = null;
+            indices = null;
+        }
+    }
+}
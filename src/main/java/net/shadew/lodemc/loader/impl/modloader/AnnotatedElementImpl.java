@@ -19,9 +19,6 @@ package net.shadew.lodemc.loader.impl.modloader;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldNode;
-import org.objectweb.asm.tree.MethodNode;
 
 import java.lang.annotation.ElementType;
 import java.util.Collections;
@@ -31,19 +28,30 @@ import java.util.Map;
 
 import net.shadew.lodemc.loader.api.mod.AnnotatedElement;
 import net.shadew.lodemc.loader.api.mod.Mod;
-
+import net.shadew.lodemc.loader.impl.index.AnnotationIndex;
+import net.shadew.lodemc.loader.impl.index.IndexedElement;
+import net.shadew.lodemc.loader.impl.index.StringTable;
+
+/**
+ * An annotated element of a mod. Annotated elements live for the entire session and there can be very many of them,
+ * so they're kept small: names and types are shared through an {@link ElementPool}, and annotation values are kept
+ * packed until they're asked for. Most annotations are never asked for their values, the few that are keep them
+ * unpacked.
+ */
 public class AnnotatedElementImpl implements AnnotatedElement {
     private final ElementType type;
-    private final String pathToClass;
+    private final String pathToClass; // Null when the class is at the path of its name
     private final Mod mod;
     private final Type container;
     private final String memberName;
     private final Type memberDesc;
     private final int memberMods;
     private final Type annotation;
-    private final Map<String, Object> values;
+    private final byte[] values; // Null when the annotation has no values
+    private final StringTable strings;
+    private volatile Map<String, Object> valuesMap;
 
-    private AnnotatedElementImpl(ElementType type, String pathToClass, Mod mod, Type container, String memberName, Type memberDesc, int memberMods, Type annotation, Map<String, Object> values) {
+    private AnnotatedElementImpl(ElementType type, String pathToClass, Mod mod, Type container, String memberName, Type memberDesc, int memberMods, Type annotation, byte[] values, StringTable strings) {
         this.type = type;
         this.pathToClass = pathToClass;
         this.mod = mod;
@@ -52,12 +60,13 @@ public class AnnotatedElementImpl implements AnnotatedElement {
         this.memberDesc = memberDesc;
         this.memberMods = memberMods;
         this.annotation = annotation;
-        this.values = Collections.unmodifiableMap(values);
+        this.values = values;
+        this.strings = strings;
     }
 
     @Override
     public String getPathToClass() {
-        return pathToClass;
+        return pathToClass != null ? pathToClass : container.getInternalName() + ".class";
     }
 
     @Override
@@ -90,9 +99,21 @@ public class AnnotatedElementImpl implements AnnotatedElement {
         return annotation;
     }
 
+    /**
+     * Returns the values of the annotation. These are unpacked on the first call.
+     */
     @Override
     public Map<String, Object> getAnnotationValues() {
-        return values;
+        if (values == null) {
+            return Collections.emptyMap();
+        }
+
+        // Unpacking twice on a race is harmless, both maps are equal
+        Map<String, Object> map = valuesMap;
+        if (map == null) {
+            valuesMap = map = makeValuesMap(AnnotationIndex.unpackAnnotation(values, strings));
+        }
+        return map;
     }
 
     @Override
@@ -114,45 +135,51 @@ public class AnnotatedElementImpl implements AnnotatedElement {
                 );
             }
         }
-        return values;
-    }
-
-    public static AnnotatedElementImpl forClass(String path, Mod mod, ClassNode node, AnnotationNode annotation) {
-        Type classDesc = Type.getObjectType(node.name);
-        return new AnnotatedElementImpl(
-            (node.access & Opcodes.ACC_ANNOTATION) != 0 ? ElementType.ANNOTATION_TYPE : ElementType.TYPE,
-            path, mod,
-            classDesc,
-            node.name,
-            classDesc,
-            node.access,
-            Type.getType(annotation.desc),
-            makeValuesMap(annotation)
-        );
+        return Collections.unmodifiableMap(values);
     }
 
-    public static AnnotatedElementImpl forMethod(String path, Mod mod, ClassNode owner, MethodNode method, AnnotationNode annotation) {
-        return new AnnotatedElementImpl(
-            method.name.equals("<init>") ? ElementType.CONSTRUCTOR : ElementType.METHOD,
-            path, mod,
-            Type.getObjectType(owner.name),
-            method.name,
-            Type.getMethodType(method.desc),
-            method.access,
-            Type.getType(annotation.desc),
-            makeValuesMap(annotation)
-        );
-    }
-
-    public static AnnotatedElementImpl forField(String path, Mod mod, ClassNode owner, FieldNode field, AnnotationNode annotation) {
-        return new AnnotatedElementImpl(
-            ElementType.FIELD, path, mod,
-            Type.getObjectType(owner.name),
-            field.name,
-            Type.getType(field.desc),
-            field.access,
-            Type.getType(annotation.desc),
-            makeValuesMap(annotation)
-        );
+    static AnnotatedElementImpl fromIndex(IndexedElement element, Mod mod, ElementPool pool) {
+        Type container = pool.objectType(element.getOwner());
+        String path = element.getPath().equals(element.getOwner() + ".class") ? null : element.getPath();
+        AnnotationNode annotation = element.getAnnotation();
+        Type annotationType = pool.type(annotation.desc);
+        byte[] values = annotation.values == null || annotation.values.isEmpty()
+                        ? null
+                        : AnnotationIndex.packAnnotation(annotation, pool.strings());
+
+        switch (element.getKind()) {
+            case CLASS:
+                return new AnnotatedElementImpl(
+                    (element.getAccess() & Opcodes.ACC_ANNOTATION) != 0 ? ElementType.ANNOTATION_TYPE : ElementType.TYPE,
+                    path, mod,
+                    container,
+                    pool.string(element.getName()),
+                    container,
+                    element.getAccess(),
+                    annotationType,
+                    values, pool.strings()
+                );
+            case METHOD:
+                return new AnnotatedElementImpl(
+                    element.getName().equals("<init>") ? ElementType.CONSTRUCTOR : ElementType.METHOD,
+                    path, mod,
+                    container,
+                    pool.string(element.getName()),
+                    pool.type(element.getDesc()),
+                    element.getAccess(),
+                    annotationType,
+                    values, pool.strings()
+                );
+            default:
+                return new AnnotatedElementImpl(
+                    ElementType.FIELD, path, mod,
+                    container,
+                    pool.string(element.getName()),
+                    pool.type(element.getDesc()),
+                    element.getAccess(),
+                    annotationType,
+                    values, pool.strings()
+                );
+        }
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import org.objectweb.asm.Type;
+
+import java.lang.annotation.ElementType;
+import java.util.*;
+
+import net.shadew.lodemc.loader.api.mod.AnnotatedElement;
+
+/**
+ * The annotated elements of all mods, grouped by annotation and container type up front. Every query returns an
+ * immutable list that was computed when the index was built.
+ */
+public class AnnotatedElementIndex {
+    private final List<AnnotatedElement> elements;
+    private final Map<Type, List<AnnotatedElement>> byAnnotation;
+    private final Map<Type, Map<ElementType, List<AnnotatedElement>>> byAnnotationAndElement;
+    private final Map<Type, List<AnnotatedElement>> byContainer;
+
+    public AnnotatedElementIndex(List<ModImpl> mods) {
+        List<AnnotatedElement> all = new ArrayList<>();
+        Map<Type, List<AnnotatedElement>> byAnnotation = new HashMap<>();
+        Map<Type, Map<ElementType, List<AnnotatedElement>>> byAnnotationAndElement = new HashMap<>();
+        Map<Type, List<AnnotatedElement>> byContainer = new HashMap<>();
+
+        for (ModImpl mod : mods) {
+            for (AnnotatedElement element : mod.getAnnotatedElements()) {
+                all.add(element);
+                byAnnotation.computeIfAbsent(element.getAnnotationType(), k -> new ArrayList<>()).add(element);
+                byAnnotationAndElement.computeIfAbsent(element.getAnnotationType(), k -> new EnumMap<>(ElementType.class))
+                                      .computeIfAbsent(element.getElementType(), k -> new ArrayList<>())
+                                      .add(element);
+                byContainer.computeIfAbsent(element.getContainerType(), k -> new ArrayList<>()).add(element);
+            }
+        }
+
+        this.elements = freeze(all);
+        this.byAnnotation = freezeAll(byAnnotation);
+        this.byContainer = freezeAll(byContainer);
+        byAnnotationAndElement.values().forEach(map -> map.replaceAll((elementType, list) -> freeze(list)));
+        this.byAnnotationAndElement = byAnnotationAndElement;
+    }
+
+    public List<AnnotatedElement> getElements() {
+        return elements;
+    }
+
+    public List<AnnotatedElement> getElements(Type annotationType) {
+        return byAnnotation.getOrDefault(annotationType, Collections.emptyList());
+    }
+
+    public List<AnnotatedElement> getElements(Type annotationType, ElementType elementType) {
+        Map<ElementType, List<AnnotatedElement>> map = byAnnotationAndElement.get(annotationType);
+        return map == null ? Collections.emptyList() : map.getOrDefault(elementType, Collections.emptyList());
+    }
+
+    public List<AnnotatedElement> getElementsIn(Type containerType) {
+        return byContainer.getOrDefault(containerType, Collections.emptyList());
+    }
+
+    private static Map<Type, List<AnnotatedElement>> freezeAll(Map<Type, List<AnnotatedElement>> map) {
+        map.replaceAll((type, list) -> freeze(list));
+        return map;
+    }
+
+    private static List<AnnotatedElement> freeze(List<AnnotatedElement> list) {
+        // A view over an exactly sized array, rather than an array list with spare capacity
+        return Collections.unmodifiableList(Arrays.asList(list.toArray(new AnnotatedElement[0])));
+    }
+}
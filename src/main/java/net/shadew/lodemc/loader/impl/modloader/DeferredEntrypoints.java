@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import java.util.*;
+
+/**
+ * The linked entrypoints that wait for a trigger: the initialization of a class, or a named event. Triggers fire only
+ * once, later triggers of the same class or event do nothing. Entrypoints added after their trigger fired are called
+ * right away.
+ */
+public class DeferredEntrypoints {
+    private final Map<String, List<EntrypointContainer>> byClass = new HashMap<>();
+    private final Map<String, List<EntrypointContainer>> byEvent = new HashMap<>();
+    private final Set<String> triggeredClasses = new HashSet<>();
+    private final Set<String> triggeredEvents = new HashSet<>();
+
+    void add(EntrypointContainer entrypoint) {
+        boolean triggered = false;
+        synchronized (this) {
+            for (String cls : entrypoint.getTriggerClasses()) {
+                byClass.computeIfAbsent(cls, k -> new ArrayList<>()).add(entrypoint);
+                triggered |= triggeredClasses.contains(cls);
+            }
+            for (String event : entrypoint.getTriggerEvents()) {
+                byEvent.computeIfAbsent(event, k -> new ArrayList<>()).add(entrypoint);
+                triggered |= triggeredEvents.contains(event);
+            }
+        }
+        if (triggered) {
+            entrypoint.callOnce();
+        }
+    }
+
+    public void triggerClass(String internalName) {
+        List<EntrypointContainer> entrypoints;
+        synchronized (this) {
+            triggeredClasses.add(internalName);
+            entrypoints = byClass.remove(internalName);
+        }
+        trigger(entrypoints);
+    }
+
+    public void triggerEvent(String event) {
+        List<EntrypointContainer> entrypoints;
+        synchronized (this) {
+            triggeredEvents.add(event);
+            entrypoints = byEvent.remove(event);
+        }
+        trigger(entrypoints);
+    }
+
+    private static void trigger(List<EntrypointContainer> entrypoints) {
+        // Entrypoints are called outside the lock, they may very well trigger other entrypoints
+        if (entrypoints != null) {
+            entrypoints.forEach(EntrypointContainer::callOnce);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import org.objectweb.asm.Type;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.shadew.lodemc.loader.impl.index.StringTable;
+
+/**
+ * Shares the names and types of annotated elements between all elements of all mods. Most elements repeat the same
+ * few annotation types, owners and descriptors, so these are only kept in memory once. Not thread safe.
+ */
+class ElementPool {
+    private final Map<String, String> names = new HashMap<>();
+    private final StringTable strings = new StringTable();
+    private final Map<String, Type> objectTypes = new HashMap<>();
+    private final Map<String, Type> types = new HashMap<>();
+
+    String string(String str) {
+        String pooled = names.putIfAbsent(str, str);
+        return pooled == null ? str : pooled;
+    }
+
+    /**
+     * The table that packed annotation values refer to. It's shared by all elements and outlives the pool, frozen once
+     * all elements are created.
+     */
+    StringTable strings() {
+        return strings;
+    }
+
+    Type objectType(String internalName) {
+        return objectTypes.computeIfAbsent(internalName, Type::getObjectType);
+    }
+
+    /**
+     * Returns the type of a field, method or annotation descriptor.
+     */
+    Type type(String descriptor) {
+        return types.computeIfAbsent(descriptor, Type::getType);
+    }
+}
@@ -20,15 +20,23 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 import java.lang.annotation.ElementType;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.shadew.lodemc.loader.api.Environment;
+import net.shadew.lodemc.loader.api.LoaderException;
 import net.shadew.lodemc.loader.api.LodeLoader;
 import net.shadew.lodemc.loader.api.mod.AnnotatedElement;
 import net.shadew.lodemc.loader.api.mod.Entrypoint;
+import net.shadew.lodemc.loader.impl.classloader.RemovedClassException;
 
 public class EntrypointContainer {
     public static final Type ENTRYPOINT_ANNOTATION = Type.getType(Entrypoint.class);
@@ -36,15 +44,62 @@ public class EntrypointContainer {
     private final String[] requiredMods;
     private final Environment env;
     private final AnnotatedElement element;
+    private final String declaration;
+    private final boolean mainThread;
+    private final List<String> triggerClasses;
+    private final List<String> triggerEvents;
+    private final AtomicBoolean called = new AtomicBoolean();
+    private MethodHandle method;
+    private Class<?> type;
 
-    public EntrypointContainer(String[] requiredMods, Environment env, AnnotatedElement element) {
+    public EntrypointContainer(String[] requiredMods, Environment env, AnnotatedElement element, boolean mainThread, List<String> triggerClasses, List<String> triggerEvents) {
         this.requiredMods = requiredMods;
         this.env = env;
         this.element = element;
+        this.mainThread = mainThread;
+        this.triggerClasses = triggerClasses;
+        this.triggerEvents = triggerEvents;
+        this.declaration = null;
+    }
+
+    private EntrypointContainer(EntrypointDeclaration declaration) {
+        this.requiredMods = declaration.getRequiredMods();
+        this.env = declaration.getEnvironment();
+        this.element = null;
+        this.mainThread = declaration.isMainThread();
+        this.triggerClasses = Collections.emptyList();
+        this.triggerEvents = Collections.emptyList();
+        this.declaration = declaration.getEntrypoint();
+    }
+
+    public String[] getRequiredMods() {
+        return requiredMods;
+    }
+
+    public boolean isMainThread() {
+        return mainThread;
+    }
+
+    /**
+     * The internal names of the classes whose initialization triggers this entrypoint.
+     */
+    public List<String> getTriggerClasses() {
+        return triggerClasses;
+    }
+
+    public List<String> getTriggerEvents() {
+        return triggerEvents;
+    }
+
+    /**
+     * Whether this entrypoint waits for a trigger, rather than being called at initialization.
+     */
+    public boolean isDeferred() {
+        return !triggerClasses.isEmpty() || !triggerEvents.isEmpty();
     }
 
     public boolean isSafeToLoad(LodeLoader loader) {
-        if (element.getElementType() != ElementType.METHOD && element.getElementType() != ElementType.TYPE)
+        if (element != null && element.getElementType() != ElementType.METHOD && element.getElementType() != ElementType.TYPE)
             return false;
 
         for (String mod : requiredMods) {
@@ -60,87 +115,144 @@ public class EntrypointContainer {
         return env == loader.getEnvironment();
     }
 
-    public void call(LodeLoader loader) {
+    /**
+     * Resolves the entrypoint in the game class loader, so that calling it is a direct call. This loads the class of
+     * the entrypoint, but doesn't initialize it.
+     *
+     * @return False when a transformer removed the class of the entrypoint, so it must not be called in this environment
+     * @throws LoaderException When the entrypoint can't be called
+     */
+    public boolean link(LodeLoader loader) {
+        ClassLoader classLoader = loader.getGameClassLoader();
+        if (element == null) {
+            return linkDeclared(classLoader);
+        }
+
+        String owner = element.getContainerType().getClassName();
         if (element.getElementType() == ElementType.METHOD) {
             String name = element.getMemberName();
             Type desc = element.getMemberDescriptor();
             int mods = element.getMemberModifiers();
             if (desc.getArgumentTypes().length > 0) {
-                throw new RuntimeException("Cannot call @Entrypoint method '" + name + "' as it has arguments");
+                throw new LoaderException("Cannot call @Entrypoint method '" + name + "' as it has arguments").critical();
             }
             if ((mods & Opcodes.ACC_STATIC) == 0) {
-                throw new RuntimeException("Cannot call @Entrypoint method '" + name + "' as it is not static");
+                throw new LoaderException("Cannot call @Entrypoint method '" + name + "' as it is not static").critical();
             }
             if ((mods & Opcodes.ACC_PUBLIC) == 0) {
-                throw new RuntimeException("Cannot call @Entrypoint method '" + name + "' as it is not public");
+                throw new LoaderException("Cannot call @Entrypoint method '" + name + "' as it is not public").critical();
             }
 
-            Method method = findMethod(element.getContainerType(), name, desc, loader.getGameClassLoader());
-            if (method == null) return;
-
             try {
-                method.invoke(null);
-            } catch (IllegalAccessException | InvocationTargetException exc) {
-                throw new RuntimeException("Failed to call @Entrypoint method '" + name + "'", exc);
+                Class<?> ownerCls = Class.forName(owner, false, classLoader);
+                Class<?> returnType = findClass(desc.getReturnType(), classLoader);
+                method = MethodHandles.publicLookup()
+                                      .findStatic(ownerCls, name, MethodType.methodType(returnType))
+                                      .asType(MethodType.methodType(void.class));
+            } catch (RemovedClassException exc) {
+                return false;
+            } catch (ReflectiveOperationException | LinkageError exc) {
+                throw new LoaderException("Cannot link @Entrypoint method '" + name + "' in " + owner, exc);
             }
         }
         if (element.getElementType() == ElementType.TYPE) {
             try {
-                Class.forName(element.getContainerType().getClassName(), true, loader.getGameClassLoader());
-            } catch (ClassNotFoundException ignored) {
-                // A class should exist if it is annotated - only reason we reach here is that it was stripped by
-                // a later transformer
+                type = Class.forName(owner, false, classLoader);
+            } catch (RemovedClassException exc) {
+                return false;
+            } catch (ClassNotFoundException | LinkageError exc) {
+                throw new LoaderException("Cannot link @Entrypoint class " + owner, exc);
             }
         }
+        return true;
     }
 
-    private Class<?> findClass(Type owner, ClassLoader clsLoader) {
-        if (owner.getSort() == Type.METHOD) return null;
-        if (owner.getSort() == Type.BYTE) return byte.class;
-        if (owner.getSort() == Type.SHORT) return short.class;
-        if (owner.getSort() == Type.INT) return int.class;
-        if (owner.getSort() == Type.LONG) return long.class;
-        if (owner.getSort() == Type.FLOAT) return float.class;
-        if (owner.getSort() == Type.DOUBLE) return double.class;
-        if (owner.getSort() == Type.CHAR) return char.class;
-        if (owner.getSort() == Type.BOOLEAN) return boolean.class;
-        if (owner.getSort() == Type.ARRAY) {
-            String clsname = owner.getInternalName().replace('/', '.');
-            try {
-                return Class.forName(clsname);
-            } catch (ClassNotFoundException e) {
-                return null;
+    private boolean linkDeclared(ClassLoader classLoader) {
+        int sep = declaration.indexOf("::");
+        String owner = sep < 0 ? declaration : declaration.substring(0, sep);
+        try {
+            Class<?> ownerCls = Class.forName(owner, false, classLoader);
+            if (sep < 0) {
+                type = ownerCls;
+                return true;
             }
-        }
 
-        String clsname = owner.getClassName();
-        try {
-            return clsLoader.loadClass(clsname);
-        } catch (ClassNotFoundException e) {
-            return null;
+            // We don't know the descriptor without scanning, so the method is found by name
+            String name = declaration.substring(sep + 2);
+            Method mth = ownerCls.getMethod(name);
+            if (!Modifier.isStatic(mth.getModifiers())) {
+                throw new LoaderException("Cannot call entrypoint method '" + name + "' as it is not static").critical();
+            }
+            method = MethodHandles.publicLookup()
+                                  .unreflect(mth)
+                                  .asType(MethodType.methodType(void.class));
+            return true;
+        } catch (RemovedClassException exc) {
+            return false;
+        } catch (ReflectiveOperationException | LinkageError exc) {
+            throw new LoaderException("Cannot link entrypoint '" + declaration + "'", exc);
         }
     }
 
-    private Method findMethod(Type owner, String name, Type desc, ClassLoader loader) {
-        Class<?> ownerCls = findClass(owner, loader);
-        if (ownerCls == null) return null;
-
-        Type[] args = desc.getArgumentTypes();
-        Class<?>[] argTypes = new Class<?>[args.length];
+    /**
+     * Calls this entrypoint unless it was called before. Deferred entrypoints may have multiple triggers, but they're
+     * only called for the first.
+     */
+    public void callOnce() {
+        if (called.compareAndSet(false, true)) {
+            call();
+        }
+    }
 
-        for (int i = 0, l = args.length; i < l; i++) {
-            Class<?> cls = findClass(args[i], loader);
-            if (cls == null) return null;
-            argTypes[i] = cls;
+    public void call() {
+        if (method != null) {
+            try {
+                method.invokeExact();
+            } catch (Throwable exc) {
+                String name = element != null ? "@Entrypoint method '" + element.getMemberName() + "'" : "entrypoint '" + declaration + "'";
+                throw new RuntimeException("Failed to call " + name, exc);
+            }
         }
+        if (type != null) {
+            try {
+                Class.forName(type.getName(), true, type.getClassLoader());
+            } catch (ClassNotFoundException exc) {
+                throw new RuntimeException(exc); // Can't happen, we loaded it already
+            }
+        }
+    }
 
-        try {
-            return ownerCls.getMethod(name, argTypes);
-        } catch (NoSuchMethodException e) {
-            return null;
+    private static Class<?> findClass(Type type, ClassLoader loader) throws ClassNotFoundException {
+        switch (type.getSort()) {
+            case Type.VOID: return void.class;
+            case Type.BOOLEAN: return boolean.class;
+            case Type.CHAR: return char.class;
+            case Type.BYTE: return byte.class;
+            case Type.SHORT: return short.class;
+            case Type.INT: return int.class;
+            case Type.FLOAT: return float.class;
+            case Type.LONG: return long.class;
+            case Type.DOUBLE: return double.class;
+            case Type.ARRAY: return Class.forName(type.getDescriptor().replace('/', '.'), false, loader);
+            default: return Class.forName(type.getClassName(), false, loader);
         }
     }
 
+    /**
+     * Creates an entrypoint declared in the mod config, either as {@code pkg.Class} or as {@code pkg.Class::method}.
+     */
+    public static EntrypointContainer fromDeclaration(EntrypointDeclaration declaration) {
+        return new EntrypointContainer(declaration);
+    }
+
+    /**
+     * Returns how the given annotated element would be declared in the mod config.
+     */
+    public static String declarationOf(AnnotatedElement element) {
+        String owner = element.getContainerType().getClassName();
+        return element.getElementType() == ElementType.METHOD ? owner + "::" + element.getMemberName() : owner;
+    }
+
     public static EntrypointContainer tryInstantiate(AnnotatedElement element) {
         if (element.getAnnotationType().equals(ENTRYPOINT_ANNOTATION)) {
             Map<String, Object> values = element.getAnnotationValues();
@@ -183,7 +295,22 @@ public class EntrypointContainer {
             // In case they really want this @Entrypoint to load in neither client or server env, just ignore it
             if (!client && !server) return null;
 
-            return new EntrypointContainer(requires, env, element);
+            List<String> triggerClasses = new ArrayList<>();
+            if (values.containsKey("triggerClasses")) {
+                for (Object o : (List<?>) values.get("triggerClasses")) {
+                    triggerClasses.add(((Type) o).getInternalName());
+                }
+            }
+
+            List<String> triggerEvents = new ArrayList<>();
+            if (values.containsKey("triggerEvents")) {
+                for (Object o : (List<?>) values.get("triggerEvents")) {
+                    triggerEvents.add((String) o);
+                }
+            }
+
+            boolean mainThread = Boolean.TRUE.equals(values.get("mainThread"));
+            return new EntrypointContainer(requires, env, element, mainThread, triggerClasses, triggerEvents);
         }
         return null;
     }
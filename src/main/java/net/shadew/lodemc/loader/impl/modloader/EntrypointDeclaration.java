@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import net.shadew.lodemc.loader.api.Environment;
+
+/**
+ * An entrypoint declared in the {@code entrypoints} of {@code lode_mod.json}, rather than by an {@code @Entrypoint}
+ * annotation.
+ */
+public class EntrypointDeclaration {
+    private final String entrypoint;
+    private final String[] requiredMods;
+    private final Environment environment;
+    private final boolean mainThread;
+
+    public EntrypointDeclaration(String entrypoint, String[] requiredMods, Environment environment, boolean mainThread) {
+        this.entrypoint = entrypoint;
+        this.requiredMods = requiredMods;
+        this.environment = environment;
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * The entrypoint, either {@code pkg.Class} or {@code pkg.Class::method}.
+     */
+    public String getEntrypoint() {
+        return entrypoint;
+    }
+
+    public String[] getRequiredMods() {
+        return requiredMods;
+    }
+
+    /**
+     * The environment to call this entrypoint in, or null to call it in both.
+     */
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    public boolean isMainThread() {
+        return mainThread;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.shadew.lodemc.loader.api.LoaderException;
+import net.shadew.lodemc.loader.api.LodeLoader;
+import net.shadew.lodemc.loader.impl.LoaderPhase;
+import net.shadew.lodemc.loader.impl.PhaseStatus;
+
+/**
+ * Links the entrypoints of all mods once the game class loader is ready, so that broken entrypoints are reported
+ * before the game starts rather than when they're called. Entrypoints that aren't meant for this environment, or that
+ * require mods that aren't loaded, are left out. Deferred entrypoints are handed to {@link DeferredEntrypoints} instead
+ * of being called at initialization.
+ */
+public class EntrypointLinkPhase implements LoaderPhase<Void> {
+    private final Map<String, List<LoaderException>> problems = new LinkedHashMap<>();
+    private PhaseStatus status = PhaseStatus.SUCCESS;
+
+    private final List<ModImpl> mods;
+    private final DeferredEntrypoints deferred;
+
+    public EntrypointLinkPhase(List<ModImpl> mods, DeferredEntrypoints deferred) {
+        this.mods = mods;
+        this.deferred = deferred;
+    }
+
+    @Override
+    public String name() {
+        return "LinkEntrypoints";
+    }
+
+    @Override
+    public Void result() {
+        return null;
+    }
+
+    @Override
+    public PhaseStatus status() {
+        return status;
+    }
+
+    @Override
+    public Map<String, List<LoaderException>> problems() {
+        return problems;
+    }
+
+    @Override
+    public void run(LodeLoader loader) {
+        boolean printTimes = System.getProperties().containsKey("lode.debug.entrypoint_times");
+        for (ModImpl mod : mods) {
+            long start = System.nanoTime();
+            int linked = 0;
+            for (EntrypointContainer entrypoint : mod.getEntrypoints()) {
+                if (!entrypoint.isSafeToLoad(loader)) {
+                    continue;
+                }
+                try {
+                    // Entrypoints in classes that are stripped for this environment are skipped
+                    if (!entrypoint.link(loader)) {
+                        continue;
+                    }
+                    if (entrypoint.isDeferred()) {
+                        deferred.add(entrypoint);
+                    } else {
+                        mod.addLinkedEntrypoint(entrypoint);
+                    }
+                    linked++;
+                } catch (LoaderException exc) {
+                    handleProblem(mod.getId(), exc.problem(mod));
+                }
+            }
+
+            if (printTimes) {
+                long micros = (System.nanoTime() - start) / 1000;
+                System.out.println("Linked " + linked + " entrypoints of " + mod.getId() + " in " + micros + "us");
+            }
+        }
+    }
+
+    private void handleProblem(String type, LoaderException problem) {
+        problems.computeIfAbsent(type, k -> new ArrayList<>()).add(problem);
+
+        PhaseStatus pendingStatus = problem.isCritical() ? PhaseStatus.FATAL : PhaseStatus.WARNING;
+        if (pendingStatus.compareTo(status) > 0) {
+            status = pendingStatus;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.shadew.lodemc.loader.impl.LoaderThreads;
+
+/**
+ * Calls the linked entrypoints of all mods, in parallel where possible. Entrypoints of one mod are called in order, and
+ * after all entrypoints of the mods they require. Entrypoints that must be called on the main thread are handed to the
+ * thread calling {@link #run}, all others run on the loader worker pool.
+ */
+public class EntrypointScheduler {
+    private static final Node DONE = new Node(null, null);
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final BlockingQueue<Node> mainThreadQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private ClassLoader contextClassLoader;
+
+    public EntrypointScheduler(List<ModImpl> mods) {
+        Map<String, Node> lastNodes = new HashMap<>();
+        for (ModImpl mod : mods) {
+            Node previous = null;
+            for (EntrypointContainer entrypoint : mod.getLinkedEntrypoints()) {
+                Node node = new Node(entrypoint, mod.getId());
+                if (previous != null) {
+                    previous.addDependent(node);
+                }
+                nodes.add(node);
+                previous = node;
+            }
+            if (previous != null) {
+                lastNodes.put(mod.getId(), previous);
+            }
+        }
+
+        // Since the entrypoints of a mod are chained, depending on the last one means depending on all of them
+        for (Node node : nodes) {
+            for (String required : node.entrypoint.getRequiredMods()) {
+                Node last = lastNodes.get(required);
+                if (last != null && !required.equals(node.modId)) {
+                    last.addDependent(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls all entrypoints and returns when they're done, rethrowing the first failure if any of them failed. Must
+     * be called on the main thread.
+     */
+    public void run() {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        if (hasCycle()) {
+            // Mods requiring each other can't be ordered, they were always called in mod order so keep doing that
+            System.err.println("Entrypoints of mods require each other, calling all entrypoints on the main thread");
+            nodes.forEach(node -> node.entrypoint.call());
+            return;
+        }
+
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        remaining.set(nodes.size());
+
+        // Collect the roots before scheduling any, or a finished root may make a later node look like one
+        List<Node> roots = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node.pending.get() == 0) {
+                roots.add(node);
+            }
+        }
+        roots.forEach(this::schedule);
+
+        try {
+            for (Node node = mainThreadQueue.take(); node != DONE; node = mainThreadQueue.take()) {
+                call(node);
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while calling entrypoints", exc);
+        }
+
+        Throwable exc = failure.get();
+        if (exc instanceof RuntimeException) {
+            throw (RuntimeException) exc;
+        } else if (exc instanceof Error) {
+            throw (Error) exc;
+        } else if (exc != null) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    private boolean hasCycle() {
+        Map<Node, Integer> pending = new HashMap<>();
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node node : nodes) {
+            pending.put(node, node.pending.get());
+            if (node.pending.get() == 0) {
+                ready.add(node);
+            }
+        }
+
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            visited++;
+            for (Node dependent : node.dependents) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return visited != nodes.size();
+    }
+
+    private void schedule(Node node) {
+        if (node.entrypoint.isMainThread()) {
+            mainThreadQueue.add(node);
+        } else {
+            LoaderThreads.pool().execute(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader previous = thread.getContextClassLoader();
+                thread.setContextClassLoader(contextClassLoader);
+                try {
+                    call(node);
+                } finally {
+                    thread.setContextClassLoader(previous);
+                }
+            });
+        }
+    }
+
+    private void call(Node node) {
+        try {
+            // After a failure, entrypoints are skipped but still completed, so that the main thread gets to finish
+            if (failure.get() == null) {
+                node.entrypoint.call();
+            }
+        } catch (Throwable exc) {
+            failure.compareAndSet(null, exc);
+        }
+
+        for (Node dependent : node.dependents) {
+            if (dependent.pending.decrementAndGet() == 0) {
+                schedule(dependent);
+            }
+        }
+        if (remaining.decrementAndGet() == 0) {
+            mainThreadQueue.add(DONE);
+        }
+    }
+
+    private static class Node {
+        final EntrypointContainer entrypoint;
+        final String modId;
+        final List<Node> dependents = new ArrayList<>();
+        final AtomicInteger pending = new AtomicInteger();
+
+        Node(EntrypointContainer entrypoint, String modId) {
+            this.entrypoint = entrypoint;
+            this.modId = modId;
+        }
+
+        void addDependent(Node node) {
+            dependents.add(node);
+            node.pending.incrementAndGet();
+        }
+    }
+}
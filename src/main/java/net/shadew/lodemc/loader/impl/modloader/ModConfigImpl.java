@@ -41,6 +41,9 @@ public class ModConfigImpl implements ModConfig {
     private final Map<String, List<String>> mixinConfigs = new LinkedHashMap<>();
 
     private final List<String> entrypoints = new ArrayList<>();
+    private final List<EntrypointDeclaration> entrypointDeclarations = new ArrayList<>();
+    private boolean scan = true;
+    private List<String> scanPackages;
 
     public ModConfigImpl(String id, Environment environment) {
         this.id = id;
@@ -297,7 +300,12 @@ public class ModConfigImpl implements ModConfig {
     }
 
     public void addEntrypoint(String cls) {
-        entrypoints.add(cls);
+        addEntrypoint(new EntrypointDeclaration(cls, new String[0], null, false));
+    }
+
+    public void addEntrypoint(EntrypointDeclaration entrypoint) {
+        entrypoints.add(entrypoint.getEntrypoint());
+        entrypointDeclarations.add(entrypoint);
     }
 
     private void setEntrypoints(JsonElement element) {
@@ -306,16 +314,59 @@ public class ModConfigImpl implements ModConfig {
         }
 
         if (!element.isJsonArray()) {
-            throw new LoaderException("Field 'entrypoints' must be an array of strings");
+            throw new LoaderException("Field 'entrypoints' must be an array of strings or objects");
         }
 
         for (JsonElement el : element.getAsJsonArray()) {
-            if (!el.isJsonPrimitive() || !el.getAsJsonPrimitive().isString()) {
-                throw new LoaderException("Field 'entrypoints' must be an array of strings");
+            if (el.isJsonPrimitive() && el.getAsJsonPrimitive().isString()) {
+                addEntrypoint(checkEntrypoint(el.getAsString()));
+            } else if (el.isJsonObject()) {
+                addEntrypoint(loadEntrypoint(el.getAsJsonObject()));
+            } else {
+                throw new LoaderException("Field 'entrypoints' must be an array of strings or objects");
+            }
+        }
+    }
+
+    private static EntrypointDeclaration loadEntrypoint(JsonObject object) {
+        JsonElement entrypoint = object.get("entrypoint");
+        if (entrypoint == null || !entrypoint.isJsonPrimitive() || !entrypoint.getAsJsonPrimitive().isString()) {
+            throw new LoaderException("Entrypoint objects must have an 'entrypoint' string");
+        }
+
+        List<String> requires = new ArrayList<>();
+        JsonElement requiresElement = object.get("requires");
+        if (requiresElement != null) {
+            if (!requiresElement.isJsonArray()) {
+                throw new LoaderException("Entrypoint field 'requires' must be an array of strings");
+            }
+            for (JsonElement el : requiresElement.getAsJsonArray()) {
+                if (!el.isJsonPrimitive() || !el.getAsJsonPrimitive().isString()) {
+                    throw new LoaderException("Entrypoint field 'requires' must be an array of strings");
+                }
+                requires.add(el.getAsString());
             }
+        }
+
+        JsonElement mainThread = object.get("mainThread");
+        if (mainThread != null && (!mainThread.isJsonPrimitive() || !mainThread.getAsJsonPrimitive().isBoolean())) {
+            throw new LoaderException("Entrypoint field 'mainThread' must be a boolean");
+        }
+
+        return new EntrypointDeclaration(
+            checkEntrypoint(entrypoint.getAsString()),
+            requires.toArray(new String[0]),
+            loadEnvironment(object.get("environment")),
+            mainThread != null && mainThread.getAsBoolean()
+        );
+    }
 
-            addEntrypoint(el.getAsString());
+    private static String checkEntrypoint(String entrypoint) {
+        int sep = entrypoint.indexOf("::");
+        if (entrypoint.isEmpty() || sep == 0 || sep >= 0 && sep == entrypoint.length() - 2) {
+            throw new LoaderException("Invalid entrypoint '" + entrypoint + "', must be 'pkg.Class' or 'pkg.Class::method'");
         }
+        return entrypoint;
     }
 
     @Override
@@ -323,18 +374,77 @@ public class ModConfigImpl implements ModConfig {
         return entrypoints;
     }
 
-    public static ModConfigImpl load(JsonObject object) {
-        JsonElement idElement = object.get("id");
-        if (idElement == null) {
-            throw new LoaderException("Field 'id' not specified");
+    public List<EntrypointDeclaration> getEntrypointDeclarations() {
+        return entrypointDeclarations;
+    }
+
+    public void setScan(boolean scan) {
+        this.scan = scan;
+    }
+
+    public void addScanPackage(String pkg) {
+        if (scanPackages == null) {
+            scanPackages = new ArrayList<>();
         }
+        scanPackages.add(pkg);
+    }
 
-        if (!idElement.isJsonPrimitive() || !idElement.getAsJsonPrimitive().isString()) {
-            throw new LoaderException("Field 'id' must be a string");
+    private void setScan(JsonElement element) {
+        if (element == null) {
+            return;
         }
-        String id = idElement.getAsString();
 
-        JsonElement envElement = object.get("environment");
+        if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isBoolean()) {
+            setScan(element.getAsBoolean());
+            return;
+        } else if (element.isJsonArray()) {
+            for (JsonElement el : element.getAsJsonArray()) {
+                if (!el.isJsonPrimitive() || !el.getAsJsonPrimitive().isString()) {
+                    throw new LoaderException("Field 'scan' must be a boolean or an array of package names");
+                }
+
+                addScanPackage(el.getAsString());
+            }
+            return;
+        }
+
+        throw new LoaderException("Field 'scan' must be a boolean or an array of package names");
+    }
+
+    /**
+     * Whether the classes of this mod are scanned for annotations at all.
+     */
+    public boolean isScanned() {
+        return scan;
+    }
+
+    /**
+     * The packages to scan for annotations, including their subpackages, or null to scan all classes.
+     */
+    public List<String> getScanPackages() {
+        return scanPackages;
+    }
+
+    /**
+     * Whether the class file at the given path in the mod is scanned for annotations.
+     */
+    public boolean isScanned(String path) {
+        if (!scan) {
+            return false;
+        }
+        if (scanPackages == null) {
+            return true;
+        }
+        for (String pkg : scanPackages) {
+            String prefix = pkg.replace('.', '/') + "/";
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Environment loadEnvironment(JsonElement envElement) {
         Environment env = null;
         if (envElement != null) {
             if (!envElement.isJsonPrimitive() || !envElement.getAsJsonPrimitive().isString()) {
@@ -355,8 +465,21 @@ public class ModConfigImpl implements ModConfig {
                     throw new LoaderException("Invalid environment '" + envs + "', must be 'client', 'server' or 'both'");
             }
         }
+        return env;
+    }
+
+    public static ModConfigImpl load(JsonObject object) {
+        JsonElement idElement = object.get("id");
+        if (idElement == null) {
+            throw new LoaderException("Field 'id' not specified");
+        }
+
+        if (!idElement.isJsonPrimitive() || !idElement.getAsJsonPrimitive().isString()) {
+            throw new LoaderException("Field 'id' must be a string");
+        }
+        String id = idElement.getAsString();
 
-        ModConfigImpl impl = new ModConfigImpl(id, env);
+        ModConfigImpl impl = new ModConfigImpl(id, loadEnvironment(object.get("environment")));
 
         impl.setName(object.get("name"));
         impl.setVersion(object.get("version"));
@@ -366,6 +489,7 @@ public class ModConfigImpl implements ModConfig {
         impl.setLicense(object.get("license"));
         impl.setCredits(object.get("credits"));
         impl.setEntrypoints(object.get("entrypoints"));
+        impl.setScan(object.get("scan"));
         impl.setMixinConfigs(object.get("mixins"));
 
         return impl;
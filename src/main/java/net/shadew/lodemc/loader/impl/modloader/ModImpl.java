@@ -21,10 +21,10 @@ import org.objectweb.asm.Type;
 import java.nio.file.Path;
 import java.util.*;
 
-import net.shadew.lodemc.loader.api.LodeLoader;
 import net.shadew.lodemc.loader.api.mod.AnnotatedElement;
 import net.shadew.lodemc.loader.api.mod.Mod;
 import net.shadew.lodemc.loader.api.transformer.ClassPath;
+import net.shadew.lodemc.loader.impl.LodeLoaderImpl;
 import net.shadew.lodemc.loader.impl.discovery.ModFile;
 import net.shadew.lodemc.loader.impl.transformers.CoLoadInjector;
 
@@ -32,25 +32,40 @@ public class ModImpl implements Mod {
     private final String id;
     private final ClassPath classpath;
     private final ModConfigImpl config;
+    private final ModFile modFile;
     private final Path rootPath;
     private final List<AnnotatedElementImpl> annotatedElements = new ArrayList<>();
     private final List<AnnotatedElement> annotatedElementsImm = Collections.unmodifiableList(annotatedElements);
     private final Map<Type, List<AnnotatedElementImpl>> elementsByAnnotation = new HashMap<>();
     private final Map<Type, List<AnnotatedElement>> elementsByAnnotationImm = new HashMap<>();
     private final List<EntrypointContainer> entrypoints = new ArrayList<>();
+    private final List<EntrypointContainer> linkedEntrypoints = new ArrayList<>();
+    private final Set<String> declaredEntrypoints = new HashSet<>();
 
     public ModImpl(String id, ModFile modFile, ModConfigImpl config) {
         this.id = id;
         this.classpath = modFile;
         this.config = config;
-        this.rootPath = modFile.getRoot();
+        this.modFile = modFile;
+        this.rootPath = null;
+        addDeclaredEntrypoints();
     }
 
     public ModImpl(String id, ClassPath classpath, Path rootPath, ModConfigImpl config) {
         this.id = id;
         this.classpath = classpath;
         this.config = config;
+        this.modFile = null;
         this.rootPath = rootPath;
+        addDeclaredEntrypoints();
+    }
+
+    private void addDeclaredEntrypoints() {
+        for (EntrypointDeclaration entrypoint : config.getEntrypointDeclarations()) {
+            if (declaredEntrypoints.add(entrypoint.getEntrypoint())) {
+                entrypoints.add(EntrypointContainer.fromDeclaration(entrypoint));
+            }
+        }
     }
 
     @Override
@@ -69,20 +84,23 @@ public class ModImpl implements Mod {
 
     @Override
     public Path getPath(String path) {
-        return rootPath.resolve(path);
+        return getRootPath().resolve(path);
     }
 
     @Override
     public Path getRootPath() {
-        return rootPath;
+        // Mod jars are only opened as a file system when someone needs their root
+        return modFile != null ? modFile.getRoot() : rootPath;
     }
 
     @Override
-    public List<AnnotatedElement> getAnnotatedElements(Type annotationType) {
-        return elementsByAnnotationImm.computeIfAbsent(
-            annotationType,
-            k -> Collections.unmodifiableList(elementsByAnnotation.get(k))
-        );
+    public synchronized List<AnnotatedElement> getAnnotatedElements(Type annotationType) {
+        List<AnnotatedElementImpl> elements = elementsByAnnotation.get(annotationType);
+        if (elements == null) {
+            LodeLoaderImpl.instance.checkAnnotationDeclared(annotationType);
+            return Collections.emptyList();
+        }
+        return elementsByAnnotationImm.computeIfAbsent(annotationType, k -> Collections.unmodifiableList(elements));
     }
 
     @Override
@@ -90,19 +108,33 @@ public class ModImpl implements Mod {
         return annotatedElementsImm;
     }
 
-    public void runEntrypoints(LodeLoader loader) {
-        entrypoints.forEach(entrypoint -> {
-            if (entrypoint.isSafeToLoad(loader))
-                entrypoint.call(loader);
-        });
+    public List<EntrypointContainer> getEntrypoints() {
+        return entrypoints;
+    }
+
+    /**
+     * The entrypoints that were linked by the {@link EntrypointLinkPhase}, these are the ones that will be called.
+     */
+    public List<EntrypointContainer> getLinkedEntrypoints() {
+        return linkedEntrypoints;
     }
 
-    public void addAnnotatedElement(AnnotatedElementImpl elm) {
+    void addLinkedEntrypoint(EntrypointContainer entrypoint) {
+        linkedEntrypoints.add(entrypoint);
+    }
+
+    public synchronized void addAnnotatedElement(AnnotatedElementImpl elm) {
         annotatedElements.add(elm);
         elementsByAnnotation.computeIfAbsent(elm.getAnnotationType(), k -> new ArrayList<>()).add(elm);
 
+        // An entrypoint that is also declared in the mod config is only called once, as the config declares it
         EntrypointContainer entrypoint = EntrypointContainer.tryInstantiate(elm);
-        if (entrypoint != null) entrypoints.add(entrypoint);
+        if (entrypoint != null && !declaredEntrypoints.contains(EntrypointContainer.declarationOf(elm))) {
+            entrypoints.add(entrypoint);
+
+            // Trigger classes need their hook before any of them loads, which may be before entrypoints are linked
+            entrypoint.getTriggerClasses().forEach(CoLoadInjector::registerTrigger);
+        }
 
         CoLoadInjector.process(elm);
     }
@@ -71,11 +71,9 @@ public class ModLoaderPhase implements LoaderPhase<List<ModImpl>> {
     @Override
     public void run(LodeLoader loader) {
         for (ModFile modFile : modFiles) {
-            Path modJson = modFile.findFile("lode_mod.json");
-
-            if (Files.exists(modJson) && Files.isRegularFile(modJson)) {
+            if (modFile.hasFile("lode_mod.json")) {
                 try {
-                    ModConfigImpl config = loadConfig(modJson, modFile);
+                    ModConfigImpl config = loadConfig(modFile);
                     String id = config.getId();
                     if (usedIds.contains(id)) {
                         throw new LoaderException("Mod with '" + id + "' exists twice").critical().problem(modFile);
@@ -118,6 +116,16 @@ public class ModLoaderPhase implements LoaderPhase<List<ModImpl>> {
         }
     }
 
+    private ModConfigImpl loadConfig(ModFile modFile) {
+        JsonElement element;
+        try {
+            element = modFile.readJson("lode_mod.json");
+        } catch (Exception exc) {
+            throw new LoaderException("Failed to load lode_mod.json", exc).critical().problem(modFile);
+        }
+        return loadConfig(element, modFile);
+    }
+
     private ModConfigImpl loadConfig(Path path, Object responsible) {
         JsonElement element;
         try (InputStreamReader in = new InputStreamReader(Files.newInputStream(path))) {
@@ -125,7 +133,10 @@ public class ModLoaderPhase implements LoaderPhase<List<ModImpl>> {
         } catch (Exception exc) {
             throw new LoaderException("Failed to load lode_mod.json", exc).critical().problem(responsible);
         }
+        return loadConfig(element, responsible);
+    }
 
+    private ModConfigImpl loadConfig(JsonElement element, Object responsible) {
         try {
             return ModConfigImpl.load(element.getAsJsonObject());
         } catch (LoaderException exc) {
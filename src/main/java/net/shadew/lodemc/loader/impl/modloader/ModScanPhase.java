@@ -16,35 +16,61 @@
 
 package net.shadew.lodemc.loader.impl.modloader;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.tree.AnnotationNode;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldNode;
-import org.objectweb.asm.tree.MethodNode;
-
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Stream;
 
 import net.shadew.lodemc.loader.api.LoaderException;
 import net.shadew.lodemc.loader.api.LodeLoader;
+import net.shadew.lodemc.loader.api.transformer.ClassPath;
 import net.shadew.lodemc.loader.impl.LoaderPhase;
+import net.shadew.lodemc.loader.impl.LoaderThreads;
+import net.shadew.lodemc.loader.impl.LodeLoaderImpl;
 import net.shadew.lodemc.loader.impl.PhaseStatus;
+import net.shadew.lodemc.loader.impl.cache.AnnotationIndexCache;
+import net.shadew.lodemc.loader.impl.cache.Fingerprint;
+import net.shadew.lodemc.loader.impl.discovery.JarArchive;
+import net.shadew.lodemc.loader.impl.discovery.ModFile;
+import net.shadew.lodemc.loader.impl.index.AnnotationIndex;
+import net.shadew.lodemc.loader.impl.index.AnnotationIndexer;
+import net.shadew.lodemc.loader.impl.index.ClassFilesHash;
+import net.shadew.lodemc.loader.impl.index.IndexedElement;
 
 public class ModScanPhase implements LoaderPhase<Void> {
     private final Map<String, List<LoaderException>> problems = new LinkedHashMap<>();
     private PhaseStatus status = PhaseStatus.SUCCESS;
 
+    private static final int CLASSES_PER_TASK = 64;
+
     private final List<ModImpl> mods;
+    private final Set<String> annotations;
+    private final AnnotationIndexCache indexCache;
 
-    public ModScanPhase(List<ModImpl> mods) {
+    public ModScanPhase(List<ModImpl> mods, Set<String> annotations) {
         this.mods = mods;
+        this.annotations = annotations;
+
+        // Indices only hold the annotations we're interested in, so they're cached separately for each set of these
+        Fingerprint interest = new Fingerprint();
+        new TreeSet<>(annotations).forEach(interest::add);
+        this.indexCache = System.getProperties().containsKey("lode.cache.disable")
+                          ? null
+                          : new AnnotationIndexCache(
+                              LodeLoaderImpl.instance.getCacheDirectory()
+                                                     .resolve("annotations")
+                                                     .resolve(Fingerprint.toHex(interest.finish()).substring(0, 16))
+                          );
     }
 
     @Override
@@ -69,17 +95,133 @@ public class ModScanPhase implements LoaderPhase<Void> {
 
     @Override
     public void run(LodeLoader loader) {
+        List<ScanTask> tasks = new ArrayList<>();
         for (ModImpl mod : mods) {
+            ScanTask task = new ScanTask(mod);
+            tasks.add(task);
+            LoaderThreads.pool().execute(task);
+        }
+
+        // Register in mod order, so that the result doesn't depend on which mod finished scanning first
+        ElementPool pool = new ElementPool();
+        for (ScanTask task : tasks) {
+            AnnotationIndex index = task.join();
+            if (index == null) {
+                handleProblem(task.mod.getId(), task.problem);
+                continue;
+            }
+            for (IndexedElement element : index.getElements()) {
+                // Embedded indices hold all annotations and classes
+                if (!annotations.contains(element.getAnnotation().desc)) {
+                    continue;
+                }
+                if (!task.mod.getConfig().isScanned(element.getPath())) {
+                    continue;
+                }
+                task.mod.addAnnotatedElement(AnnotatedElementImpl.fromIndex(element, task.mod, pool));
+            }
+        }
+        pool.strings().freeze();
+    }
+
+    private AnnotationIndex index(ModImpl mod) throws IOException {
+        ModConfigImpl config = mod.getConfig();
+        if (!config.isScanned()) {
+            return new AnnotationIndex("", Collections.emptyList());
+        }
+
+        ClassPath classPath = mod.getClassPath();
+        JarArchive archive = classPath instanceof ModFile ? ((ModFile) classPath).getArchive() : null;
+        if (archive != null && archive.contains(AnnotationIndex.EMBEDDED_PATH)) {
+            AnnotationIndex index = readEmbeddedIndex(archive);
+            if (index != null) {
+                return index;
+            }
+        }
+
+        // Archives are immutable under their hash, so their index can be reused as long as the hash matches
+        String hash = classPath instanceof ModFile ? ((ModFile) classPath).getContentHash() : null;
+        if (hash != null && config.getScanPackages() != null) {
+            // Only part of the archive is scanned, which must not be mistaken for the index of the entire archive
+            Fingerprint packages = new Fingerprint();
+            new TreeSet<>(config.getScanPackages()).forEach(packages::add);
+            hash += "-" + Fingerprint.toHex(packages.finish()).substring(0, 16);
+        }
+        if (hash != null && indexCache != null) {
+            AnnotationIndex index = indexCache.get(hash);
+            if (index == null) {
+                index = scan(mod, hash);
+                indexCache.put(index);
+            }
+            return index;
+        }
+        return scan(mod, hash == null ? "" : hash);
+    }
+
+    private AnnotationIndex readEmbeddedIndex(JarArchive archive) {
+        ClassFilesHash classFiles = new ClassFilesHash();
+        for (String file : archive.listFiles()) {
+            if (file.endsWith(".class")) {
+                classFiles.add(file, archive.getSize(file), archive.getCrc(file));
+            }
+        }
+
+        try {
+            AnnotationIndex index = AnnotationIndex.read(archive.readBytes(AnnotationIndex.EMBEDDED_PATH));
+            if (index.getArchiveHash().equals(classFiles.finish())) {
+                return index;
+            }
+            System.out.println("Embedded annotation index of " + archive.getPath() + " is outdated, scanning it instead");
+        } catch (IOException exc) {
+            System.err.println("Ignoring embedded annotation index of " + archive.getPath() + ": " + exc.getMessage());
+        }
+        return null;
+    }
+
+    private AnnotationIndex scan(ModImpl mod, String hash) throws IOException {
+        List<String> classFiles = new ArrayList<>();
+        ClassSource source;
+
+        // Read mod files straight from their archive, so that mod jars don't need a file system
+        ClassPath classPath = mod.getClassPath();
+        Iterable<String> files = classPath instanceof ModFile ? classPath.listFiles() : null;
+        if (files != null) {
+            for (String file : files) {
+                if (file.endsWith(".class") && mod.getConfig().isScanned(file)) {
+                    classFiles.add(file);
+                }
+            }
+            source = file -> load(classPath, file);
+        } else {
             Path root = mod.getRootPath();
             try (Stream<Path> allPaths = Files.walk(root)) {
                 allPaths.filter(path -> path.getFileName().toString().endsWith(".class"))
-                        .forEach(path -> process(root.relativize(path).toString().replace('\\', '/'), load(path), mod));
-            } catch (IOException exc) {
-                handleProblem(mod.getId(), new LoaderException(exc).critical().problem(mod));
-            } catch (LoaderException exc) {
-                handleProblem(mod.getId(), exc.critical().problem(mod));
+                        .map(path -> root.relativize(path).toString().replace('\\', '/'))
+                        .filter(mod.getConfig()::isScanned)
+                        .forEach(classFiles::add);
             }
+            classFiles.sort(null);
+            source = file -> Files.readAllBytes(root.resolve(file));
         }
+
+        List<IndexTask> tasks = new ArrayList<>();
+        for (int from = 0; from < classFiles.size(); from += CLASSES_PER_TASK) {
+            int to = Math.min(from + CLASSES_PER_TASK, classFiles.size());
+            tasks.add(new IndexTask(classFiles.subList(from, to), source, annotations));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        // Merge in file order, so that the index is the same no matter how the work was split
+        AnnotationIndexer indexer = new AnnotationIndexer(annotations);
+        for (IndexTask task : tasks) {
+            if (task.problem instanceof IOException) {
+                throw (IOException) task.problem;
+            } else if (task.problem != null) {
+                throw (LoaderException) task.problem;
+            }
+            indexer.append(task.indexer);
+        }
+        return indexer.build(hash);
     }
 
     private void handleProblem(String type, LoaderException problem) {
@@ -91,52 +233,68 @@ public class ModScanPhase implements LoaderPhase<Void> {
         }
     }
 
-    private ClassNode load(Path path) {
-        try (InputStream in = Files.newInputStream(path)) {
-            ClassReader reader = new ClassReader(in);
-            ClassNode node = new ClassNode();
-            reader.accept(node, 0);
-            return node;
-        } catch (IOException exc) {
+    private byte[] load(ClassPath classPath, String file) {
+        try {
+            return classPath.loadClassBytes(file.substring(0, file.length() - 6));
+        } catch (ClassNotFoundException exc) {
             throw new LoaderException(exc);
         }
     }
 
-    private void process(String path, ClassNode cls, ModImpl mod) {
-        if (cls.visibleAnnotations != null) {
-            for (AnnotationNode ann : cls.visibleAnnotations) {
-                mod.addAnnotatedElement(AnnotatedElementImpl.forClass(path, mod, cls, ann));
-            }
+    private interface ClassSource {
+        byte[] read(String file) throws IOException;
+    }
+
+    private class ScanTask extends RecursiveTask<AnnotationIndex> {
+        private final ModImpl mod;
+        private LoaderException problem;
+
+        ScanTask(ModImpl mod) {
+            this.mod = mod;
         }
-        if (cls.invisibleAnnotations != null) {
-            for (AnnotationNode ann : cls.invisibleAnnotations) {
-                mod.addAnnotatedElement(AnnotatedElementImpl.forClass(path, mod, cls, ann));
+
+        @Override
+        protected AnnotationIndex compute() {
+            try {
+                return index(mod);
+            } catch (IOException exc) {
+                problem = new LoaderException(exc).critical().problem(mod);
+            } catch (LoaderException exc) {
+                problem = exc.critical().problem(mod);
+            } catch (RuntimeException exc) {
+                problem = new LoaderException(exc).critical().problem(mod);
             }
+            return null;
         }
+    }
 
-        for (MethodNode method : cls.methods) {
-            if (method.visibleAnnotations != null) {
-                for (AnnotationNode ann : method.visibleAnnotations) {
-                    mod.addAnnotatedElement(AnnotatedElementImpl.forMethod(path, mod, cls, method, ann));
-                }
-            }
-            if (method.invisibleAnnotations != null) {
-                for (AnnotationNode ann : method.invisibleAnnotations) {
-                    mod.addAnnotatedElement(AnnotatedElementImpl.forMethod(path, mod, cls, method, ann));
-                }
-            }
+    private static class IndexTask extends RecursiveAction {
+        private final List<String> files;
+        private final ClassSource source;
+        private final AnnotationIndexer indexer;
+        private Exception problem;
+
+        IndexTask(List<String> files, ClassSource source, Set<String> annotations) {
+            this.files = files;
+            this.source = source;
+            this.indexer = new AnnotationIndexer(annotations);
         }
 
-        for (FieldNode field : cls.fields) {
-            if (field.visibleAnnotations != null) {
-                for (AnnotationNode ann : field.visibleAnnotations) {
-                    mod.addAnnotatedElement(AnnotatedElementImpl.forField(path, mod, cls, field, ann));
-                }
-            }
-            if (field.invisibleAnnotations != null) {
-                for (AnnotationNode ann : field.invisibleAnnotations) {
-                    mod.addAnnotatedElement(AnnotatedElementImpl.forField(path, mod, cls, field, ann));
+        @Override
+        protected void compute() {
+            // Failures are kept rather than thrown, the fork join pool would wrap them when rethrowing them on another
+            // thread
+            String file = null;
+            try {
+                for (int i = 0, l = files.size(); i < l; i++) {
+                    file = files.get(i);
+                    indexer.indexClass(file, source.read(file));
                 }
+            } catch (IOException | LoaderException exc) {
+                problem = exc;
+            } catch (RuntimeException exc) {
+                // ASM throws all kinds of runtime exceptions on malformed class files
+                problem = new LoaderException("Malformed class file " + file, exc);
             }
         }
     }
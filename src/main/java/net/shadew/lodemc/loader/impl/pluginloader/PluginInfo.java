@@ -23,6 +23,8 @@ public class PluginInfo {
     private final String pluginId;
     private final String pluginPackage;
     private final List<String> pluginEntrypointClasses = new ArrayList<>();
+    private final List<String> after = new ArrayList<>();
+    private final List<String> before = new ArrayList<>();
 
     public PluginInfo(String pluginId, String pluginPackage) {
         this.pluginId = pluginId;
@@ -33,6 +35,14 @@ public class PluginInfo {
         pluginEntrypointClasses.add(clsName);
     }
 
+    public void addAfter(String pluginId) {
+        after.add(pluginId);
+    }
+
+    public void addBefore(String pluginId) {
+        before.add(pluginId);
+    }
+
     public String getPluginId() {
         return pluginId;
     }
@@ -45,6 +55,20 @@ public class PluginInfo {
         return pluginEntrypointClasses;
     }
 
+    /**
+     * The plugins that must be initialized before this plugin, if they are present.
+     */
+    public List<String> getAfter() {
+        return after;
+    }
+
+    /**
+     * The plugins that must be initialized after this plugin, if they are present.
+     */
+    public List<String> getBefore() {
+        return before;
+    }
+
     @Override
     public String toString() {
         return "PluginInfo [id: '" + pluginId + "']";
@@ -20,29 +20,36 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiConsumer;
 
 import net.shadew.lodemc.loader.api.LoaderException;
 import net.shadew.lodemc.loader.api.LodeLoader;
 import net.shadew.lodemc.loader.api.plugin.LoaderPlugin;
 import net.shadew.lodemc.loader.impl.LoaderPhase;
+import net.shadew.lodemc.loader.impl.LoaderThreads;
+import net.shadew.lodemc.loader.impl.LodeLoaderImpl;
 import net.shadew.lodemc.loader.impl.PhaseStatus;
 
 public class PluginInitPhase implements LoaderPhase<Void> {
     private final Map<String, List<LoaderException>> problems = new LinkedHashMap<>();
     private PhaseStatus status = PhaseStatus.SUCCESS;
 
+    private final String name;
+    private final List<PluginInfo> pluginInfo;
     private final Map<String, List<LoaderPlugin>> plugins;
     private final BiConsumer<LoaderPlugin, LodeLoader> initializer;
 
-    public PluginInitPhase(Map<String, List<LoaderPlugin>> plugins, BiConsumer<LoaderPlugin, LodeLoader> initializer) {
+    public PluginInitPhase(String name, List<PluginInfo> pluginInfo, Map<String, List<LoaderPlugin>> plugins, BiConsumer<LoaderPlugin, LodeLoader> initializer) {
+        this.name = name;
+        this.pluginInfo = pluginInfo;
         this.plugins = plugins;
         this.initializer = initializer;
     }
 
     @Override
     public String name() {
-        return "InitializePlugins";
+        return name;
     }
 
     @Override
@@ -62,13 +69,61 @@ public class PluginInitPhase implements LoaderPhase<Void> {
 
     @Override
     public void run(LodeLoader loader) {
-        plugins.forEach((id, plugins) -> plugins.forEach(plugin -> {
-            try {
-                initializer.accept(plugin, loader);
-            } catch (LoaderException exc) {
-                handleProblem(id, exc);
+        List<List<String>> levels;
+        try {
+            levels = PluginOrder.levels(pluginInfo, plugins.keySet());
+        } catch (LoaderException exc) {
+            handleProblem("ordering", exc);
+            return;
+        }
+
+        boolean printTimes = System.getProperties().containsKey("lode.debug.plugin_times");
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        for (List<String> level : levels) {
+            List<InitTask> tasks = new ArrayList<>();
+            for (String id : level) {
+                tasks.add(new InitTask(id, plugins.get(id), loader, contextLoader));
+            }
+
+            // The first plugin runs on this thread, so that a level with only one plugin doesn't leave it
+            for (int i = 1; i < tasks.size(); i++) {
+                LoaderThreads.pool().execute(tasks.get(i));
+            }
+            tasks.get(0).invoke();
+
+            // Wait for the entire level before anything is thrown, so no plugin is left running on the pool
+            Throwable failure = null;
+            for (InitTask task : tasks) {
+                task.join();
+                if (task.failure != null) {
+                    if (failure == null) {
+                        failure = task.failure;
+                    } else {
+                        failure.addSuppressed(task.failure);
+                    }
+                }
+            }
+
+            // Apply the results in plugin order, so that the transformer chain doesn't depend on which plugin
+            // finished first
+            for (InitTask task : tasks) {
+                if (task.installs != null) {
+                    LodeLoaderImpl.instance.applyInstalls(task.installs);
+                }
+                task.problems.forEach(problem -> handleProblem(task.id, problem));
+                if (printTimes) {
+                    System.out.println("Plugin " + task.id + " took " + task.nanos / 1000 + "us in " + name);
+                }
+            }
+
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
             }
-        }));
+        }
     }
 
     private void handleProblem(String type, LoaderException problem) {
@@ -79,4 +134,49 @@ public class PluginInitPhase implements LoaderPhase<Void> {
             status = pendingStatus;
         }
     }
+
+    private class InitTask extends RecursiveAction {
+        private final String id;
+        private final List<LoaderPlugin> plugins;
+        private final LodeLoader loader;
+        private final ClassLoader contextLoader;
+        private final List<LoaderException> problems = new ArrayList<>();
+        private List<Runnable> installs;
+        private Throwable failure;
+        private long nanos;
+
+        InitTask(String id, List<LoaderPlugin> plugins, LodeLoader loader, ClassLoader contextLoader) {
+            this.id = id;
+            this.plugins = plugins;
+            this.loader = loader;
+            this.contextLoader = contextLoader;
+        }
+
+        @Override
+        protected void compute() {
+            Thread thread = Thread.currentThread();
+            ClassLoader prevContextLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(contextLoader);
+
+            // Failures are kept rather than thrown, the fork join pool would wrap them when rethrowing them on another
+            // thread
+            long start = System.nanoTime();
+            try {
+                installs = LodeLoaderImpl.instance.collectInstalls(() -> {
+                    for (LoaderPlugin plugin : plugins) {
+                        try {
+                            initializer.accept(plugin, loader);
+                        } catch (LoaderException exc) {
+                            problems.add(exc);
+                        }
+                    }
+                });
+            } catch (Throwable exc) {
+                failure = exc;
+            } finally {
+                nanos = System.nanoTime() - start;
+                thread.setContextClassLoader(prevContextLoader);
+            }
+        }
+    }
 }
@@ -31,6 +31,7 @@ import net.shadew.lodemc.loader.api.LodeLoader;
 import net.shadew.lodemc.loader.impl.LoaderPhase;
 import net.shadew.lodemc.loader.impl.LodeLoaderImpl;
 import net.shadew.lodemc.loader.impl.PhaseStatus;
+import net.shadew.lodemc.loader.impl.discovery.ModFile;
 
 public class PluginLoaderPhase implements LoaderPhase<List<PluginInfo>> {
     public static final PluginLoaderPhase INSTANCE = new PluginLoaderPhase();
@@ -66,13 +67,28 @@ public class PluginLoaderPhase implements LoaderPhase<List<PluginInfo>> {
 
     @Override
     public void run(LodeLoader loader) {
+        // Plugin info in mod files may already be known from the discovery snapshot
+        Map<String, ModFile> modFiles = new HashMap<>();
+        for (ModFile file : LodeLoaderImpl.instance.getModFiles()) {
+            if (file.hasFile("lode_loader_plugin.json")) {
+                for (URL url : file.findSources("lode_loader_plugin.json")) {
+                    modFiles.put(url.toExternalForm(), file);
+                }
+            }
+        }
+
         ClassLoader classLoader = LodeLoaderImpl.instance.getAgentClassLoader();
         try {
             Enumeration<URL> pluginJsons = classLoader.getResources("lode_loader_plugin.json");
             while (pluginJsons.hasMoreElements()) {
                 URL url = pluginJsons.nextElement();
+                ModFile file = modFiles.get(url.toExternalForm());
                 try {
-                    loadPluginInfo(url);
+                    if (file != null) {
+                        loadPluginInfo(file, url);
+                    } else {
+                        loadPluginInfo(url);
+                    }
                 } catch (LoaderException exc) {
                     handleProblem(url.toString(), exc);
                 }
@@ -82,6 +98,16 @@ public class PluginLoaderPhase implements LoaderPhase<List<PluginInfo>> {
         }
     }
 
+    private void loadPluginInfo(ModFile file, URL url) {
+        try {
+            loadPluginInfo(file.readJson("lode_loader_plugin.json"), url);
+        } catch (LoaderException exc) {
+            throw exc;
+        } catch (Exception exc) {
+            throw new LoaderException("Failed to load plugin info at " + url, exc).critical().problem(url);
+        }
+    }
+
     private void loadPluginInfo(URL url) {
         try (Reader reader = new InputStreamReader(url.openStream())) {
             JsonElement element = new JsonParser().parse(reader);
@@ -89,7 +115,7 @@ public class PluginLoaderPhase implements LoaderPhase<List<PluginInfo>> {
         } catch (LoaderException exc) {
             throw exc;
         } catch (Exception exc) {
-            throw new LoaderException("Failed to load plugin info at " + url).critical().problem(url);
+            throw new LoaderException("Failed to load plugin info at " + url, exc).critical().problem(url);
         }
     }
 
@@ -116,6 +142,13 @@ public class PluginLoaderPhase implements LoaderPhase<List<PluginInfo>> {
             }
         }
 
+        for (String after : optionalStrings(obj, "after", url)) {
+            info.addAfter(after);
+        }
+        for (String before : optionalStrings(obj, "before", url)) {
+            info.addBefore(before);
+        }
+
         add(info, url);
     }
 
@@ -138,6 +171,23 @@ public class PluginLoaderPhase implements LoaderPhase<List<PluginInfo>> {
         return val.getAsString();
     }
 
+    private List<String> optionalStrings(JsonObject object, String key, URL url) {
+        List<String> strings = new ArrayList<>();
+        if (!object.has(key))
+            return strings;
+
+        JsonElement val = object.get(key);
+        if (!val.isJsonArray())
+            throw new LoaderException("'" + key + "' not an array").critical().problem(url);
+
+        for (JsonElement element : val.getAsJsonArray()) {
+            if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString())
+                throw new LoaderException("'" + key + "' must contain only strings").critical().problem(url);
+            strings.add(element.getAsString());
+        }
+        return strings;
+    }
+
     private void handleProblem(String type, LoaderException problem) {
         problems.computeIfAbsent(type, k -> new ArrayList<>()).add(problem);
 
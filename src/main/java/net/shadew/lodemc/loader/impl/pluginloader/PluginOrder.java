@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.pluginloader;
+
+import java.util.*;
+
+import net.shadew.lodemc.loader.api.LoaderException;
+
+/**
+ * Orders plugins by the {@code after} and {@code before} constraints in their plugin info. Plugins are grouped in
+ * levels, where each plugin only depends on plugins in earlier levels, so the plugins of one level can be initialized
+ * concurrently. Within a level, plugins keep the order in which they were found.
+ */
+class PluginOrder {
+    static List<List<String>> levels(List<PluginInfo> infos, Set<String> pluginIds) {
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        for (PluginInfo info : infos) {
+            if (pluginIds.contains(info.getPluginId())) {
+                dependencies.put(info.getPluginId(), new HashSet<>());
+            }
+        }
+
+        // Constraints on plugins that aren't present are ignored
+        for (PluginInfo info : infos) {
+            String id = info.getPluginId();
+            if (!dependencies.containsKey(id)) continue;
+
+            for (String after : info.getAfter()) {
+                if (dependencies.containsKey(after) && !after.equals(id)) {
+                    dependencies.get(id).add(after);
+                }
+            }
+            for (String before : info.getBefore()) {
+                if (dependencies.containsKey(before) && !before.equals(id)) {
+                    dependencies.get(before).add(id);
+                }
+            }
+        }
+
+        List<List<String>> levels = new ArrayList<>();
+        Set<String> ordered = new HashSet<>();
+        while (ordered.size() < dependencies.size()) {
+            List<String> level = new ArrayList<>();
+            dependencies.forEach((id, deps) -> {
+                if (!ordered.contains(id) && ordered.containsAll(deps)) {
+                    level.add(id);
+                }
+            });
+
+            if (level.isEmpty()) {
+                List<String> cyclic = new ArrayList<>(dependencies.keySet());
+                cyclic.removeAll(ordered);
+                throw new LoaderException("Plugins " + String.join(", ", cyclic) + " have cyclic ordering constraints").critical();
+            }
+            ordered.addAll(level);
+            levels.add(level);
+        }
+        return levels;
+    }
+}
@@ -16,54 +16,62 @@
 
 package net.shadew.lodemc.loader.impl.transformers;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
 import java.lang.annotation.ElementType;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import net.shadew.lodemc.loader.api.mod.LoadWith;
-import net.shadew.lodemc.loader.api.transformer.Transformer;
+import net.shadew.lodemc.loader.api.transformer.TreeTransformer;
 import net.shadew.lodemc.loader.impl.ASMUtil;
 import net.shadew.lodemc.loader.impl.modloader.AnnotatedElementImpl;
 
-public class CoLoadInjector implements Transformer {
+public class CoLoadInjector implements TreeTransformer {
     public static final Type CO_LOAD_ANNOTATION = Type.getType(LoadWith.class);
-    private static final Map<String, List<Type>> CO_LOAD_MAP = new TreeMap<>();
+    // Registered while mods are scanned, and read by class loading threads at the same time
+    private static final Map<String, List<Type>> CO_LOAD_MAP = new ConcurrentHashMap<>();
+    private static final Set<String> TRIGGERS = ConcurrentHashMap.newKeySet();
 
     public static void registerCoLoad(String target, Type type) {
-        CO_LOAD_MAP.computeIfAbsent(target, k -> new ArrayList<>()).add(type);
+        CO_LOAD_MAP.computeIfAbsent(target, k -> new CopyOnWriteArrayList<>()).add(type);
+    }
+
+    /**
+     * Makes the given class trigger the deferred entrypoints waiting for it, once it's initialized.
+     */
+    public static void registerTrigger(String target) {
+        TRIGGERS.add(target);
     }
 
     @Override
     public boolean canTransform(String className) {
-        return CO_LOAD_MAP.containsKey(className);
+        return CO_LOAD_MAP.containsKey(className) || TRIGGERS.contains(className);
     }
 
     @Override
-    public byte[] transformClassBytes(String className, byte[] bytes) {
-        ClassReader reader = new ClassReader(bytes);
-        ClassNode node = new ClassNode();
-        reader.accept(node, 0);
-        transform(node);
-        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
-        node.accept(writer);
-        return writer.toByteArray();
+    public String getCacheKey() {
+        // Co-loaded classes and triggers are all registered while mods are scanned, before the cache is opened
+        return new TreeMap<>(CO_LOAD_MAP) + " " + new TreeSet<>(TRIGGERS);
     }
 
-    private void transform(ClassNode node) {
-        List<Type> coLoad = CO_LOAD_MAP.get(node.name);
-        if (coLoad == null) return;
+    @Override
+    public Result transformClassNode(String className, ClassNode node) {
+        List<Type> coLoad = CO_LOAD_MAP.getOrDefault(node.name, Collections.emptyList());
+        boolean trigger = TRIGGERS.contains(node.name);
+        if (coLoad.isEmpty() && !trigger) return Result.UNCHANGED;
 
         MethodNode clinit = ASMUtil.findMethod(node, "<clinit>", "()V")
                                    .orElseGet(() -> {
-                                       MethodNode meth = new MethodNode();
+                                       MethodNode meth = new MethodNode(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
                                        meth.instructions.add(new InsnNode(Opcodes.RETURN));
                                        node.methods.add(meth);
                                        return meth;
@@ -75,7 +83,18 @@ public class CoLoadInjector implements Transformer {
                 new LdcInsnNode(type),
                 new MethodInsnNode(Opcodes.INVOKESTATIC, "net/shadew/lodemc/loader/hooks/LodeHooks", "loadClass", "(Ljava/lang/Class;)V")
             ));
+            if (trigger) {
+                ASMUtil.insertBefore(
+                    clinit.instructions, insn,
+                    new LdcInsnNode(node.name),
+                    new MethodInsnNode(Opcodes.INVOKESTATIC, "net/shadew/lodemc/loader/hooks/LodeHooks", "triggerClass", "(Ljava/lang/String;)V")
+                );
+            }
+
+            // Each injected call pushes one value on the stack and pops it again, maxs aren't computed for us
+            clinit.maxStack++;
         });
+        return Result.MODIFIED;
     }
 
     @SuppressWarnings("unchecked")
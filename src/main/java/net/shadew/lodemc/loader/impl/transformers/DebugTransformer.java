@@ -29,21 +29,20 @@ public class DebugTransformer implements Transformer {
 
     @Override
     public boolean canTransform(String className) {
+        // Post transformers get binary names, so the filter applies as is
         for (String f : filter)
-            if (className.replace('/', '.').startsWith(f)) return true;
+            if (className.startsWith(f)) return true;
         return false;
     }
 
     @Override
     public byte[] transformClassBytes(String className, byte[] bytes) {
-        if (canTransform(className)) {
-            File file = new File(".lode/debug/classes/" + className.replace('.', '/') + ".class");
-            file.getParentFile().mkdirs();
-            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
-                out.write(bytes);
-            } catch (IOException exc) {
-                exc.printStackTrace();
-            }
+        File file = new File(".lode/debug/classes/" + className.replace('.', '/') + ".class");
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            out.write(bytes);
+        } catch (IOException exc) {
+            exc.printStackTrace();
         }
         return bytes;
     }
@@ -16,39 +16,47 @@
 
 package net.shadew.lodemc.loader.impl.transformers;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
-import net.shadew.lodemc.loader.api.transformer.Transformer;
+import java.util.Optional;
+
+import net.shadew.lodemc.loader.api.transformer.TransformerTargets;
+import net.shadew.lodemc.loader.api.transformer.TreeTransformer;
 import net.shadew.lodemc.loader.impl.ASMUtil;
 
-public class LodeInjector implements Transformer {
+public class LodeInjector implements TreeTransformer {
+    private static final TransformerTargets TARGETS = TransformerTargets.classes(
+        "net/minecraft/client/main/Main",
+        "net/minecraft/client/ClientBrandRetriever",
+        "net/minecraft/server/Bootstrap"
+    );
+
     @Override
     public boolean canTransform(String className) {
-        return className.equals("net/minecraft/client/main/Main")
-                   || className.equals("net/minecraft/client/ClientBrandRetriever")
-                   || className.equals("net/minecraft/server/Bootstrap");
+        return TARGETS.getClasses().contains(className);
+    }
+
+    @Override
+    public TransformerTargets getTargets() {
+        return TARGETS;
     }
 
     @Override
-    public byte[] transformClassBytes(String className, byte[] bytes) {
-        ClassReader reader = new ClassReader(bytes);
-        ClassNode node = new ClassNode();
-        reader.accept(node, 0);
-        transform(node);
-        ClassWriter writer = new ClassWriter(reader, 0);
-        node.accept(writer);
-        return writer.toByteArray();
+    public String getCacheKey() {
+        return "";
     }
 
-    private void transform(ClassNode node) {
+    @Override
+    public Result transformClassNode(String className, ClassNode node) {
+        Optional<MethodNode> hook = Optional.empty();
         if (node.name.equals("net/minecraft/client/main/Main")) {
-            ASMUtil.findMethod(node, "main", "([Ljava/lang/String;)V").ifPresent(method -> {
+            hook = ASMUtil.findMethod(node, "main", "([Ljava/lang/String;)V");
+            hook.ifPresent(method -> {
                 ASMUtil.prepend(
                     method.instructions,
                     new VarInsnNode(Opcodes.ALOAD, 0),
@@ -65,7 +73,8 @@ public class LodeInjector implements Transformer {
                 ));
             });
         } else if (node.name.equals("net/minecraft/client/ClientBrandRetriever")) {
-            ASMUtil.findMethod(node, "getClientModName", "()Ljava/lang/String;").ifPresent(method -> {
+            hook = ASMUtil.findMethod(node, "getClientModName", "()Ljava/lang/String;");
+            hook.ifPresent(method -> {
                 method.instructions.clear();
                 ASMUtil.append(
                     method.instructions,
@@ -101,5 +110,6 @@ public class LodeInjector implements Transformer {
 //                            ));
 //                        });
 //        }
+        return hook.isPresent() ? Result.MODIFIED : Result.UNCHANGED;
     }
 }
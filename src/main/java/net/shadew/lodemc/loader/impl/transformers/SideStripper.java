@@ -16,8 +16,6 @@
 
 package net.shadew.lodemc.loader.impl.transformers;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
@@ -27,20 +25,25 @@ import java.util.List;
 import java.util.Set;
 
 import net.shadew.lodemc.loader.api.Environment;
-import net.shadew.lodemc.loader.api.transformer.Transformer;
+import net.shadew.lodemc.loader.api.transformer.TreeTransformer;
+import net.shadew.lodemc.loader.impl.ClassFileUtil;
 import net.shadew.lodemc.sidemarker.ClientOnly;
 import net.shadew.lodemc.sidemarker.ExclusiveInterfaces;
 import net.shadew.lodemc.sidemarker.ServerOnly;
 
-public class SideStripper implements Transformer {
+public class SideStripper implements TreeTransformer {
     private static final Type CLIENT_ONLY = Type.getType(ClientOnly.class);
     private static final Type SERVER_ONLY = Type.getType(ServerOnly.class);
     private static final Type EXCLUSIVE_INTERFACES = Type.getType(ExclusiveInterfaces.class);
 
     private final Environment environment;
+    private final byte[] strippedDesc;
+    private final byte[] exclusiveInterfacesDesc;
 
     public SideStripper(Environment environment) {
         this.environment = environment;
+        this.strippedDesc = ClassFileUtil.utf8((environment == Environment.CLIENT ? SERVER_ONLY : CLIENT_ONLY).getDescriptor());
+        this.exclusiveInterfacesDesc = ClassFileUtil.utf8(EXCLUSIVE_INTERFACES.getDescriptor());
     }
 
     @Override
@@ -49,32 +52,32 @@ public class SideStripper implements Transformer {
     }
 
     @Override
-    public byte[] transformClassBytes(String className, byte[] bytes) {
-        ClassReader reader = new ClassReader(bytes);
-        ClassNode node = new ClassNode();
-        reader.accept(node, 0);
-        node = transform(node);
-        if (node == null) return null;
-        ClassWriter writer = new ClassWriter(reader, 0);
-        node.accept(writer);
-        return writer.toByteArray();
+    public boolean canTransform(String className, byte[] classFile) {
+        // Almost no class uses side markers, a class that doesn't mention them in its constant pool can't use them
+        return ClassFileUtil.containsUtf8(classFile, strippedDesc, exclusiveInterfacesDesc);
     }
 
+    @Override
+    public String getCacheKey() {
+        return environment.name();
+    }
+
+    @Override
     @SuppressWarnings("unchecked")
-    private ClassNode transform(ClassNode node) {
+    public Result transformClassNode(String className, ClassNode node) {
         Type annotationType = environment == Environment.CLIENT ? SERVER_ONLY : CLIENT_ONLY;
         if (getAnnotation(node.invisibleAnnotations, annotationType) != null) {
-            return null;
+            return Result.REMOVED;
         }
         if (getAnnotation(node.visibleAnnotations, annotationType) != null) {
-            return null;
+            return Result.REMOVED;
         }
 
-        node.fields.removeIf(
+        boolean modified = node.fields.removeIf(
             n -> getAnnotation(n.invisibleAnnotations, annotationType) != null
                      || getAnnotation(n.visibleAnnotations, annotationType) != null
         );
-        node.methods.removeIf(
+        modified |= node.methods.removeIf(
             n -> getAnnotation(n.invisibleAnnotations, annotationType) != null
                      || getAnnotation(n.visibleAnnotations, annotationType) != null
         );
@@ -95,11 +98,11 @@ public class SideStripper implements Transformer {
                     }
                 }
 
-                node.interfaces.removeIf(ifc -> excludeInterfaces.contains(Type.getObjectType(ifc)));
+                modified |= node.interfaces.removeIf(ifc -> excludeInterfaces.contains(Type.getObjectType(ifc)));
             }
         }
 
-        return node;
+        return modified ? Result.MODIFIED : Result.UNCHANGED;
     }
 
     private static AnnotationNode getAnnotation(List<AnnotationNode> annotations, Type type) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.api.transformer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformerTargetsTest {
+    @Test
+    void classesAndPackagesAreKeptApart() {
+        TransformerTargets classes = TransformerTargets.classes("a/B", "c/D");
+        assertFalse(classes.isAll());
+        assertEquals(Arrays.asList("a/B", "c/D"), Arrays.asList(classes.getClasses().toArray()));
+        assertTrue(classes.getPackages().isEmpty());
+
+        TransformerTargets packages = TransformerTargets.packages("a", "c/d");
+        assertFalse(packages.isAll());
+        assertTrue(packages.getClasses().isEmpty());
+        assertEquals(Arrays.asList("a", "c/d"), Arrays.asList(packages.getPackages().toArray()));
+    }
+
+    @Test
+    void andMergesWithoutDuplicates() {
+        TransformerTargets merged = TransformerTargets.classes("a/B")
+                                                      .and(TransformerTargets.packages("c"))
+                                                      .and(TransformerTargets.classes("a/B", "e/F"));
+
+        assertFalse(merged.isAll());
+        assertEquals(Arrays.asList("a/B", "e/F"), Arrays.asList(merged.getClasses().toArray()));
+        assertEquals(Collections.singleton("c"), merged.getPackages());
+    }
+
+    @Test
+    void andWithAllIsAll() {
+        TransformerTargets classes = TransformerTargets.classes("a/B");
+        assertTrue(classes.and(TransformerTargets.all()).isAll());
+        assertTrue(TransformerTargets.all().and(classes).isAll());
+    }
+
+    @Test
+    void targetsAreImmutable() {
+        TransformerTargets targets = TransformerTargets.classes("a/B").and(TransformerTargets.packages("c"));
+        assertThrows(UnsupportedOperationException.class, () -> targets.getClasses().add("x/Y"));
+        assertThrows(UnsupportedOperationException.class, () -> targets.getPackages().add("x"));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassFileUtilTest {
+    private static final byte[] ABSENT = ClassFileUtil.utf8("Lnet/shadew/lodemc/NotAnAnnotation;");
+
+    @Test
+    void findsEveryAnnotationTheFullParseFinds() throws Exception {
+        int annotated = 0;
+        for (byte[] cls : classes()) {
+            ClassNode node = new ClassNode();
+            new ClassReader(cls).accept(node, 0);
+
+            for (String desc : annotationDescriptors(node)) {
+                assertTrue(ClassFileUtil.containsUtf8(cls, ABSENT, ClassFileUtil.utf8(desc)), node.name + " uses " + desc);
+                annotated++;
+            }
+            assertFalse(ClassFileUtil.containsUtf8(cls, ABSENT), node.name);
+        }
+        assertNotEquals(0, annotated);
+    }
+
+    @Test
+    void matchesTheConstantPool() throws Exception {
+        for (byte[] cls : classes()) {
+            ClassReader reader = new ClassReader(cls);
+            byte[] name = ClassFileUtil.utf8(reader.getClassName());
+            assertTrue(ClassFileUtil.containsUtf8(cls, name), reader.getClassName());
+
+            // A prefix of a constant is not the constant
+            byte[] prefix = Arrays.copyOf(name, name.length - 1);
+            assertEquals(poolContains(reader, cls, prefix), ClassFileUtil.containsUtf8(cls, prefix), reader.getClassName());
+        }
+    }
+
+    @Test
+    void acceptsMalformedClasses() throws Exception {
+        byte[] cls = classes().get(0);
+        assertTrue(ClassFileUtil.containsUtf8(Arrays.copyOf(cls, 9), ABSENT));
+        assertTrue(ClassFileUtil.containsUtf8(Arrays.copyOf(cls, 40), ABSENT));
+
+        byte[] unknownTag = cls.clone();
+        unknownTag[10] = 99;
+        assertTrue(ClassFileUtil.containsUtf8(unknownTag, ABSENT));
+    }
+
+    private static boolean poolContains(ClassReader reader, byte[] cls, byte[] value) {
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset > 0 && cls[offset - 1] == 1 && reader.readUnsignedShort(offset) == value.length) {
+                if (Arrays.equals(Arrays.copyOfRange(cls, offset + 2, offset + 2 + value.length), value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> annotationDescriptors(ClassNode node) {
+        Set<String> descs = new HashSet<>();
+        addDescriptors(descs, node.visibleAnnotations);
+        addDescriptors(descs, node.invisibleAnnotations);
+        for (MethodNode method : node.methods) {
+            addDescriptors(descs, method.visibleAnnotations);
+            addDescriptors(descs, method.invisibleAnnotations);
+        }
+        for (FieldNode field : node.fields) {
+            addDescriptors(descs, field.visibleAnnotations);
+            addDescriptors(descs, field.invisibleAnnotations);
+        }
+        return descs;
+    }
+
+    private static void addDescriptors(Set<String> descs, List<AnnotationNode> annotations) {
+        if (annotations != null) {
+            annotations.forEach(annotation -> descs.add(annotation.desc));
+        }
+    }
+
+    /**
+     * The classes of ASM and JUnit, which are real class files with plenty of annotations.
+     */
+    private static List<byte[]> classes() throws IOException, URISyntaxException {
+        List<byte[]> classes = new ArrayList<>();
+        for (String resource : new String[] {"org/objectweb/asm/ClassReader.class", "org/junit/jupiter/api/Test.class"}) {
+            URL url = ClassFileUtilTest.class.getClassLoader().getResource(resource);
+            assertNotNull(url, resource);
+            try (ZipFile zip = new ZipFile(Paths.get(((JarURLConnection) url.openConnection()).getJarFileURL().toURI()).toFile())) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class") && !entry.getName().endsWith("module-info.class")) {
+                        classes.add(readAll(zip.getInputStream(entry)));
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = stream.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+
+import net.shadew.lodemc.loader.api.transformer.ClassPath;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassPathIndexTest {
+    @Test
+    void lastRegisteredClassPathWinsForClasses() throws Exception {
+        TestClassPath first = new TestClassPath("first", true, "a/A.class", "a/B.class");
+        TestClassPath second = new TestClassPath("second", true, "a/B.class", "a/C.class");
+        TestClassPath third = new TestClassPath("third", true, "a/B.class");
+        ClassPathIndex index = ClassPathIndex.build(Arrays.asList(first, second, third));
+
+        assertEquals("first:a/A.class", new String(index.loadClassBytes("a/A")));
+        assertEquals("third:a/B.class", new String(index.loadClassBytes("a/B")));
+        assertEquals("second:a/C.class", new String(index.loadClassBytes("a/C")));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void firstRegisteredClassPathWinsForResources() {
+        TestClassPath first = new TestClassPath("first", true, "a/B.class");
+        TestClassPath second = new TestClassPath("second", true, "a/B.class");
+        ClassPathIndex index = ClassPathIndex.build(Arrays.asList(first, second));
+
+        assertEquals(first.url("a/B.class"), index.findResource("a/B.class"));
+        assertEquals(Arrays.asList(first.url("a/B.class"), second.url("a/B.class")), index.findResources("a/B.class"));
+    }
+
+    @Test
+    void unindexedClassPathsAreProbedOnlyWhenTheyCanWin() throws Exception {
+        TestClassPath before = new TestClassPath("before", false, "a/A.class", "a/B.class");
+        TestClassPath indexed = new TestClassPath("indexed", true, "a/A.class", "a/B.class");
+        TestClassPath after = new TestClassPath("after", false, "a/B.class");
+        TestClassPath last = new TestClassPath("last", false);
+        ClassPathIndex index = ClassPathIndex.build(Arrays.asList(before, indexed, after, last));
+
+        // The unindexed class paths after the owner are probed last to first, the one before the owner is never asked
+        assertEquals("indexed:a/A.class", new String(index.loadClassBytes("a/A")));
+        assertEquals(1, last.probes);
+        assertEquals(1, after.probes);
+        assertEquals(0, before.probes);
+
+        assertEquals("after:a/B.class", new String(index.loadClassBytes("a/B")));
+        assertEquals(2, last.probes);
+        assertEquals(0, before.probes);
+
+        // Classes without an indexed owner are looked for in all unindexed class paths
+        before.files.add("a/D.class");
+        assertEquals("before:a/D.class", new String(index.loadClassBytes("a/D")));
+
+        assertEquals(
+            Arrays.asList(before.url("a/A.class"), indexed.url("a/A.class")),
+            index.findResources("a/A.class")
+        );
+    }
+
+    @Test
+    void missesAreRemembered() {
+        TestClassPath unindexed = new TestClassPath("unindexed", false);
+        TestClassPath indexed = new TestClassPath("indexed", true, "a/A.class");
+        ClassPathIndex index = ClassPathIndex.build(Arrays.asList(unindexed, indexed));
+
+        assertThrows(MissingClassException.class, () -> index.loadClassBytes("a/Missing"));
+        assertEquals(1, unindexed.probes);
+
+        assertThrows(MissingClassException.class, () -> index.loadClassBytes("a/Missing"));
+        assertNull(index.findResource("a/Missing.class"));
+        assertEquals(1, unindexed.probes);
+    }
+
+    @Test
+    void missesNeedNoProbingWhenEverythingIsIndexed() {
+        TestClassPath indexed = new TestClassPath("indexed", true, "a/A.class");
+        ClassPathIndex index = ClassPathIndex.build(Collections.singletonList(indexed));
+
+        assertThrows(MissingClassException.class, () -> index.loadClassBytes("a/Missing"));
+        assertTrue(index.findResources("a/Missing.class").isEmpty());
+        assertEquals(0, indexed.probes);
+    }
+
+    @Test
+    void directoriesAreNotIndexed() {
+        ClassPathIndex index = ClassPathIndex.build(Collections.singletonList(
+            new TestClassPath("indexed", true, "a/b/C.class")
+        ));
+
+        assertTrue(index.isIndexed("a/b/C.class"));
+        assertFalse(index.isIndexed("a/b"));
+        assertFalse(index.isIndexed("a"));
+        assertFalse(index.isIndexed("a/b/"));
+        assertFalse(index.isIndexed("/a/b/C.class"));
+    }
+
+    @Test
+    void mainClassPathIsIndexed() {
+        Iterable<String> files = new MainClassPath(ClassLoader.getSystemClassLoader()).listFiles();
+
+        assertNotNull(files);
+        List<String> list = new ArrayList<>();
+        files.forEach(list::add);
+        assertTrue(list.contains("org/junit/jupiter/api/Test.class"));
+    }
+
+    private static class TestClassPath implements ClassPath {
+        private final String name;
+        private final boolean indexed;
+        private final Set<String> files;
+        private int probes;
+
+        TestClassPath(String name, boolean indexed, String... files) {
+            this.name = name;
+            this.indexed = indexed;
+            this.files = new LinkedHashSet<>(Arrays.asList(files));
+        }
+
+        URL url(String file) {
+            try {
+                return new URL("file:/" + name + "/" + file);
+            } catch (MalformedURLException exc) {
+                throw new AssertionError(exc);
+            }
+        }
+
+        @Override
+        public Iterable<URL> findSources(String path) {
+            probes++;
+            return files.contains(path) ? Collections.singletonList(url(path)) : Collections.emptyList();
+        }
+
+        @Override
+        public Iterable<String> listFiles() {
+            return indexed ? files : null;
+        }
+
+        @Override
+        public byte[] loadClassBytes(String className) throws ClassNotFoundException {
+            probes++;
+            String file = className + ".class";
+            if (!files.contains(file)) {
+                throw new ClassNotFoundException(className);
+            }
+            return (name + ":" + file).getBytes();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackageTrieTest {
+    @Test
+    void containsClassesInPackagesAndSubpackages() {
+        PackageTrie trie = PackageTrie.build(Arrays.asList("org.objectweb.asm", "com.google.gson"));
+
+        assertTrue(trie.contains("org.objectweb.asm.ClassReader"));
+        assertTrue(trie.contains("org.objectweb.asm.tree.ClassNode"));
+        assertTrue(trie.contains("com.google.gson.Gson"));
+        assertTrue(trie.contains("com.google.gson.internal.bind.TypeAdapters$1"));
+    }
+
+    @Test
+    void doesNotContainSiblingsWithTheSamePrefix() {
+        PackageTrie trie = PackageTrie.build(Collections.singletonList("org.objectweb.asm"));
+
+        assertFalse(trie.contains("org.objectweb.asmx.Foo"));
+        assertFalse(trie.contains("org.objectweb.Foo"));
+        assertFalse(trie.contains("org.objectweb.asm"));
+        assertFalse(trie.contains("org"));
+        assertFalse(trie.contains(""));
+    }
+
+    @Test
+    void nestedPackagesMatchAtEitherLevel() {
+        PackageTrie trie = PackageTrie.build(Arrays.asList("a.b.c", "a"));
+
+        assertTrue(trie.contains("a.X"));
+        assertTrue(trie.contains("a.b.c.X"));
+        assertTrue(trie.contains("a.bc.X"));
+        assertFalse(trie.contains("ab.X"));
+    }
+
+    @Test
+    void ignoresTheDefaultPackage() {
+        PackageTrie trie = PackageTrie.build(Arrays.asList("", "net.example"));
+
+        assertFalse(trie.contains("Foo"));
+        assertFalse(trie.contains("org.Foo"));
+        assertTrue(trie.contains("net.example.Foo"));
+    }
+
+    @Test
+    void emptyTrieContainsNothing() {
+        PackageTrie trie = PackageTrie.build(Collections.emptyList());
+
+        assertFalse(trie.contains("java.lang.Object"));
+        assertFalse(trie.contains("Foo"));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.classloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.shadew.lodemc.loader.api.transformer.Transformer;
+import net.shadew.lodemc.loader.api.transformer.TransformerTargets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformerDispatchTest {
+    private static final TransformerStep ALL = step(TransformerTargets.all());
+    private static final TransformerStep CLIENT = step(TransformerTargets.packages("net/minecraft/client"));
+    private static final TransformerStep MINECRAFT = step(TransformerTargets.classes("net/minecraft/client/Minecraft"));
+    private static final TransformerStep DEFAULT_PACKAGE = step(TransformerTargets.classes("Main"));
+    private static final TransformerStep POST = step(TransformerTargets.packages("net/minecraft"));
+
+    @Test
+    void exactClassTargetsKeepRegistrationOrder() {
+        TransformerDispatch dispatch = compile();
+
+        TransformerDispatch.Chain chain = dispatch.lookup("net/minecraft/client/Minecraft");
+        assertEquals(Arrays.asList(ALL, CLIENT, MINECRAFT), Arrays.asList(chain.transformers));
+        assertEquals(Collections.singletonList(POST), Arrays.asList(chain.postTransformers));
+    }
+
+    @Test
+    void packageTargetsIncludeSubpackages() {
+        TransformerDispatch dispatch = compile();
+
+        assertEquals(Arrays.asList(ALL, CLIENT), Arrays.asList(dispatch.lookup("net/minecraft/client/Options").transformers));
+        assertEquals(Arrays.asList(ALL, CLIENT), Arrays.asList(dispatch.lookup("net/minecraft/client/gui/Screen").transformers));
+        assertEquals(Collections.singletonList(POST), Arrays.asList(dispatch.lookup("net/minecraft/client/gui/Screen").postTransformers));
+    }
+
+    @Test
+    void packageTargetsDoNotMatchSiblingsWithTheSamePrefix() {
+        TransformerDispatch dispatch = compile();
+
+        TransformerDispatch.Chain chain = dispatch.lookup("net/minecraft/clientbound/Packet");
+        assertEquals(Collections.singletonList(ALL), Arrays.asList(chain.transformers));
+        assertEquals(Collections.singletonList(POST), Arrays.asList(chain.postTransformers));
+
+        TransformerDispatch.Chain other = dispatch.lookup("net/minecraftforge/Foo");
+        assertEquals(Collections.singletonList(ALL), Arrays.asList(other.transformers));
+        assertEquals(0, other.postTransformers.length);
+    }
+
+    @Test
+    void defaultPackageClassesAreDispatched() {
+        TransformerDispatch dispatch = compile();
+
+        assertEquals(Arrays.asList(ALL, DEFAULT_PACKAGE), Arrays.asList(dispatch.lookup("Main").transformers));
+        assertEquals(Collections.singletonList(ALL), Arrays.asList(dispatch.lookup("Other").transformers));
+    }
+
+    @Test
+    void chainsArePerPackage() {
+        TransformerDispatch dispatch = compile();
+
+        assertSame(dispatch.lookup("net/minecraft/client/A"), dispatch.lookup("net/minecraft/client/B"));
+        assertNotSame(dispatch.lookup("net/minecraft/client/A"), dispatch.lookup("net/minecraft/client/Minecraft"));
+    }
+
+    @Test
+    void linearDispatchKeepsEveryTransformer() {
+        List<TransformerStep> transformers = Arrays.asList(ALL, CLIENT, MINECRAFT, DEFAULT_PACKAGE);
+        TransformerDispatch.Chain chain = TransformerDispatch.all(transformers, Collections.singletonList(POST));
+
+        assertEquals(transformers, Arrays.asList(chain.transformers));
+        assertEquals(Collections.singletonList(POST), Arrays.asList(chain.postTransformers));
+    }
+
+    private static TransformerDispatch compile() {
+        return TransformerDispatch.compile(
+            Arrays.asList(ALL, CLIENT, MINECRAFT, DEFAULT_PACKAGE),
+            Collections.singletonList(POST)
+        );
+    }
+
+    private static TransformerStep step(TransformerTargets targets) {
+        return TransformerStep.of(new Transformer() {
+            @Override
+            public boolean canTransform(String className) {
+                return true;
+            }
+
+            @Override
+            public TransformerTargets getTargets() {
+                return targets;
+            }
+
+            @Override
+            public byte[] transformClassBytes(String className, byte[] bytes) {
+                return bytes;
+            }
+        });
+    }
+}
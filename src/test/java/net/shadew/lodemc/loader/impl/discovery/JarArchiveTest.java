@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.discovery;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JarArchiveTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsStoredAndDeflatedEntries() throws IOException {
+        byte[] stored = "stored entry".getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = largeContent();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("META-INF/"));
+            zip.putNextEntry(storedEntry("META-INF/stored.txt", stored));
+            zip.write(stored);
+            zip.putNextEntry(new ZipEntry("a/b/Deflated.class"));
+            zip.write(deflated);
+        }
+        JarArchive archive = JarArchive.open(write("entries.jar", out.toByteArray()));
+
+        assertArrayEquals(stored, archive.readBytes("META-INF/stored.txt"));
+        assertArrayEquals(deflated, archive.readBytes("a/b/Deflated.class"));
+        assertArrayEquals(stored, toArray(archive.read("META-INF/stored.txt")));
+        assertArrayEquals(deflated, toArray(archive.read("a/b/Deflated.class")));
+        try (InputStream in = archive.open("a/b/Deflated.class")) {
+            assertArrayEquals(deflated, readAll(in));
+        }
+
+        assertEquals(deflated.length, archive.getSize("a/b/Deflated.class"));
+        assertEquals(crc(stored), archive.getCrc("META-INF/stored.txt"));
+        assertEquals(crc(deflated), archive.getCrc("a/b/Deflated.class"));
+        assertEquals(-1, archive.getSize("missing"));
+        assertNull(archive.readBytes("missing"));
+
+        assertEquals(Arrays.asList("META-INF/stored.txt", "a/b/Deflated.class"), archive.listFiles());
+        assertTrue(archive.isDirectory("META-INF"));
+        assertTrue(archive.isDirectory("a/b"));
+        assertFalse(archive.contains("a/b"));
+        assertEquals(Collections.singletonList("b"), archive.list("a"));
+    }
+
+    @Test
+    void readsZip64EndOfCentralDirectory() throws IOException {
+        // More than 65535 entries don't fit in the regular end of central directory record
+        int count = 0x10000 + 10;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.setLevel(0);
+            for (int i = 0; i < count; i++) {
+                zip.putNextEntry(new ZipEntry("e/" + i));
+                zip.write(i);
+            }
+        }
+        JarArchive archive = JarArchive.open(write("zip64.jar", out.toByteArray()));
+
+        assertEquals(count, archive.listFiles().size());
+        assertArrayEquals(new byte[] {(byte) (count - 1)}, archive.readBytes("e/" + (count - 1)));
+    }
+
+    @Test
+    void readsZip64ExtendedInformation() throws IOException {
+        byte[] content = "zip64 entry".getBytes(StandardCharsets.UTF_8);
+        JarArchive archive = JarArchive.open(write("extended.jar", zip64Entry("big.bin", content)));
+
+        assertArrayEquals(content, archive.readBytes("big.bin"));
+        assertEquals(content.length, archive.getSize("big.bin"));
+    }
+
+    @Test
+    void rejectsNonZipFiles() throws IOException {
+        Path file = write("not.jar", "definitely not a zip file, but long enough to look for one".getBytes(StandardCharsets.UTF_8));
+        assertThrows(ZipException.class, () -> JarArchive.open(file));
+    }
+
+    /**
+     * Builds an archive with a single stored entry, whose sizes and offset are only in the zip64 extra field of the
+     * central directory.
+     */
+    private static byte[] zip64Entry(String name, byte[] content) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(200 + nameBytes.length * 2 + content.length).order(ByteOrder.LITTLE_ENDIAN);
+
+        buf.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 0).putInt(0);
+        buf.putInt((int) crc(content)).putInt(content.length).putInt(content.length);
+        buf.putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes).put(content);
+
+        int central = buf.position();
+        buf.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) 0).putInt(0);
+        buf.putInt((int) crc(content)).putInt(-1).putInt(-1);
+        buf.putShort((short) nameBytes.length).putShort((short) 28).putShort((short) 0);
+        buf.putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(nameBytes);
+        buf.putShort((short) 0x0001).putShort((short) 24).putLong(content.length).putLong(content.length).putLong(0);
+
+        int end = buf.position();
+        buf.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 1);
+        buf.putInt(end - central).putInt(central).putShort((short) 0);
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    private static ZipEntry storedEntry(String name, byte[] content) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCrc(crc(content));
+        return entry;
+    }
+
+    private static byte[] largeContent() {
+        // Larger than the scratch buffer, and compressible
+        byte[] content = new byte[100000];
+        Random random = new Random(42);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return content;
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(dir.resolve(name), bytes);
+    }
+
+    private static byte[] toArray(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
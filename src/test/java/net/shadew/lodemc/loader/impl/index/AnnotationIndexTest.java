@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.index;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationIndexTest {
+    @Test
+    void roundTripsEveryValueKind() throws IOException {
+        AnnotationNode nested = new AnnotationNode("Lcom/example/Nested;");
+        nested.values = new ArrayList<>(Arrays.asList("value", "nested"));
+
+        AnnotationNode annotation = new AnnotationNode("Lcom/example/Everything;");
+        annotation.values = new ArrayList<>(Arrays.asList(
+            "string", "text",
+            "int", 42,
+            "boolean", true,
+            "byte", (byte) -3,
+            "char", 'x',
+            "short", (short) 1234,
+            "long", 1L << 40,
+            "float", 1.5f,
+            "double", -2.25,
+            "type", Type.getType("Ljava/lang/String;"),
+            "enum", new String[] {"Lcom/example/Side;", "CLIENT"},
+            "annotation", nested,
+            "array", Arrays.asList("a", "b", 3),
+            "empty", Collections.emptyList()
+        ));
+
+        List<IndexedElement> elements = Arrays.asList(
+            new IndexedElement(IndexedElement.Kind.CLASS, "com/example/Foo.class", "com/example/Foo", Opcodes.ACC_PUBLIC, "com/example/Foo", "Lcom/example/Foo;", Opcodes.ACC_PUBLIC, annotation),
+            new IndexedElement(IndexedElement.Kind.METHOD, "com/example/Foo.class", "com/example/Foo", Opcodes.ACC_PUBLIC, "init", "()V", Opcodes.ACC_STATIC, new AnnotationNode("Lcom/example/Marker;")),
+            new IndexedElement(IndexedElement.Kind.FIELD, "com/example/Bar.class", "com/example/Bar", 0, "INSTANCE", "Lcom/example/Bar;", Opcodes.ACC_FINAL, nested)
+        );
+
+        AnnotationIndex read = AnnotationIndex.read(new AnnotationIndex("hash", elements).toByteArray());
+
+        assertEquals("hash", read.getArchiveHash());
+        assertEquals(elements.size(), read.getElements().size());
+        for (int i = 0; i < elements.size(); i++) {
+            IndexedElement expected = elements.get(i);
+            IndexedElement actual = read.getElements().get(i);
+            assertEquals(expected.getKind(), actual.getKind());
+            assertEquals(expected.getPath(), actual.getPath());
+            assertEquals(expected.getOwner(), actual.getOwner());
+            assertEquals(expected.getOwnerAccess(), actual.getOwnerAccess());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getDesc(), actual.getDesc());
+            assertEquals(expected.getAccess(), actual.getAccess());
+            assertAnnotationEquals(expected.getAnnotation(), actual.getAnnotation());
+        }
+    }
+
+    @Test
+    void roundTripsAnEmptyIndex() throws IOException {
+        AnnotationIndex read = AnnotationIndex.read(new AnnotationIndex("", Collections.emptyList()).toByteArray());
+        assertEquals("", read.getArchiveHash());
+        assertTrue(read.getElements().isEmpty());
+    }
+
+    @Test
+    void packedAnnotationsUnpack() {
+        AnnotationNode annotation = new AnnotationNode("Lcom/example/Packed;");
+        annotation.values = new ArrayList<>(Arrays.asList("value", Arrays.asList(1, 2), "name", "packed"));
+
+        StringTable strings = new StringTable();
+        byte[] packed = AnnotationIndex.packAnnotation(annotation, strings);
+        assertAnnotationEquals(annotation, AnnotationIndex.unpackAnnotation(packed, strings));
+    }
+
+    @Test
+    void rejectsEveryCorruptedByte() {
+        byte[] bytes = sampleIndex().toByteArray();
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] corrupt = bytes.clone();
+            corrupt[i] ^= 0x10;
+            int at = i;
+            assertThrows(IOException.class, () -> AnnotationIndex.read(corrupt), () -> "Flipped byte " + at);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedAndExtendedIndices() {
+        byte[] bytes = sampleIndex().toByteArray();
+        for (int len = 0; len < bytes.length; len++) {
+            byte[] truncated = Arrays.copyOf(bytes, len);
+            assertThrows(IOException.class, () -> AnnotationIndex.read(truncated));
+        }
+        assertThrows(IOException.class, () -> AnnotationIndex.read(Arrays.copyOf(bytes, bytes.length + 4)));
+    }
+
+    @Test
+    void rejectsOtherVersions() {
+        byte[] bytes = sampleIndex().toByteArray();
+        bytes[7]++;
+        IOException exc = assertThrows(IOException.class, () -> AnnotationIndex.read(bytes));
+        assertTrue(exc.getMessage().contains("version"));
+    }
+
+    private static AnnotationIndex sampleIndex() {
+        AnnotationNode annotation = new AnnotationNode("Lcom/example/Sample;");
+        annotation.values = new ArrayList<>(Arrays.asList("value", "sample", "count", 3));
+        return new AnnotationIndex("0123abcd", Collections.singletonList(
+            new IndexedElement(IndexedElement.Kind.CLASS, "com/example/Sample.class", "com/example/Sample", 0, "com/example/Sample", "Lcom/example/Sample;", 0, annotation)
+        ));
+    }
+
+    private static void assertAnnotationEquals(AnnotationNode expected, AnnotationNode actual) {
+        assertEquals(expected.desc, actual.desc);
+        List<Object> expectedValues = expected.values == null ? Collections.emptyList() : expected.values;
+        List<Object> actualValues = actual.values == null ? Collections.emptyList() : actual.values;
+        assertEquals(expectedValues.size(), actualValues.size());
+        for (int i = 0; i < expectedValues.size(); i++) {
+            assertValueEquals(expectedValues.get(i), actualValues.get(i));
+        }
+    }
+
+    private static void assertValueEquals(Object expected, Object actual) {
+        if (expected instanceof AnnotationNode) {
+            assertAnnotationEquals((AnnotationNode) expected, (AnnotationNode) actual);
+        } else if (expected instanceof String[]) {
+            assertArrayEquals((String[]) expected, (String[]) actual);
+        } else if (expected instanceof List) {
+            List<?> expectedList = (List<?>) expected;
+            List<?> actualList = (List<?>) actual;
+            assertEquals(expectedList.size(), actualList.size());
+            for (int i = 0; i < expectedList.size(); i++) {
+                assertValueEquals(expectedList.get(i), actualList.get(i));
+            }
+        } else {
+            assertEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringTableTest {
+    @Test
+    void indexesEachStringOnce() {
+        StringTable table = new StringTable();
+
+        assertEquals(0, table.index("a"));
+        assertEquals(1, table.index("b"));
+        assertEquals(0, table.index(new String("a")));
+        assertEquals(2, table.size());
+        assertEquals("b", table.get(1));
+    }
+
+    @Test
+    void frozenTableKeepsItsStrings() {
+        StringTable table = new StringTable();
+        table.index("a");
+        table.index("b");
+        table.freeze();
+        table.freeze();
+
+        assertEquals(2, table.size());
+        assertEquals("a", table.get(0));
+        assertEquals("b", table.get(1));
+        assertThrows(IllegalStateException.class, () -> table.index("a"));
+    }
+}
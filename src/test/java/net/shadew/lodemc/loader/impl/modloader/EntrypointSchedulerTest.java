@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import net.shadew.lodemc.loader.api.LodeLoader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntrypointSchedulerTest {
+    private static final LodeLoader LOADER = (LodeLoader) Proxy.newProxyInstance(
+        EntrypointSchedulerTest.class.getClassLoader(),
+        new Class<?>[] {LodeLoader.class},
+        (proxy, method, args) -> {
+            if (method.getName().equals("getGameClassLoader")) {
+                return EntrypointSchedulerTest.class.getClassLoader();
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    );
+
+    @BeforeEach
+    void reset() {
+        Entrypoints.CALLS.clear();
+        Entrypoints.THREADS.clear();
+    }
+
+    @Test
+    void callsEntrypointsAfterTheModsTheyRequire() {
+        List<ModImpl> mods = Arrays.asList(
+            mod("c", entrypoint("c1", false, "b")),
+            mod("b", entrypoint("b1", false, "a"), entrypoint("b2", false)),
+            mod("a", entrypoint("a1", false), entrypoint("a2", false, "absent", "a")),
+            mod("d", entrypoint("d1", false))
+        );
+
+        // Repeat, since a wrong order would only show up in some interleavings
+        for (int i = 0; i < 50; i++) {
+            Entrypoints.CALLS.clear();
+            new EntrypointScheduler(mods).run();
+
+            List<String> calls = new ArrayList<>(Entrypoints.CALLS);
+            assertEquals(6, calls.size(), calls::toString);
+            assertBefore(calls, "a1", "a2");
+            assertBefore(calls, "a2", "b1");
+            assertBefore(calls, "b1", "b2");
+            assertBefore(calls, "b2", "c1");
+            assertTrue(calls.contains("d1"));
+        }
+    }
+
+    @Test
+    void callsMainThreadEntrypointsOnTheCallingThread() {
+        List<ModImpl> mods = Arrays.asList(
+            mod("a", entrypoint("a1", false), entrypoint("a2", true)),
+            mod("b", entrypoint("b1", false, "a"), entrypoint("b2", true))
+        );
+
+        new EntrypointScheduler(mods).run();
+
+        Thread main = Thread.currentThread();
+        assertEquals(Arrays.asList("a1", "a2", "b1", "b2"), Entrypoints.CALLS);
+        assertSame(main, Entrypoints.THREADS.get("a2"));
+        assertSame(main, Entrypoints.THREADS.get("b2"));
+        assertNotSame(main, Entrypoints.THREADS.get("a1"));
+        assertNotSame(main, Entrypoints.THREADS.get("b1"));
+    }
+
+    @Test
+    void workersUseTheContextClassLoaderOfTheCallingThread() {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        ClassLoader context = new ClassLoader(previous) { };
+        Thread.currentThread().setContextClassLoader(context);
+        try {
+            new EntrypointScheduler(Collections.singletonList(mod("a", entrypoint("context", false)))).run();
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+
+        assertSame(context, Entrypoints.CONTEXT);
+    }
+
+    @Test
+    void fallsBackToModOrderOnTheCallingThreadWhenModsRequireEachOther() {
+        List<ModImpl> mods = Arrays.asList(
+            mod("a", entrypoint("a1", false, "b"), entrypoint("a2", false)),
+            mod("b", entrypoint("b1", false, "a")),
+            mod("c", entrypoint("c1", false))
+        );
+
+        new EntrypointScheduler(mods).run();
+
+        Thread main = Thread.currentThread();
+        assertEquals(Arrays.asList("a1", "a2", "b1", "c1"), Entrypoints.CALLS);
+        Entrypoints.THREADS.values().forEach(thread -> assertSame(main, thread));
+    }
+
+    @Test
+    void rethrowsTheFailureAndSkipsDependents() {
+        List<ModImpl> mods = Arrays.asList(
+            mod("a", entrypoint("fail", false), entrypoint("a2", false)),
+            mod("b", entrypoint("b1", true, "a"))
+        );
+
+        RuntimeException exc = assertThrows(RuntimeException.class, () -> new EntrypointScheduler(mods).run());
+        assertTrue(exc.getCause() instanceof IllegalStateException);
+        assertEquals(Collections.singletonList("fail"), Entrypoints.CALLS);
+    }
+
+    @Test
+    void doesNothingWithoutEntrypoints() {
+        new EntrypointScheduler(Collections.singletonList(mod("a"))).run();
+        assertTrue(Entrypoints.CALLS.isEmpty());
+    }
+
+    private static void assertBefore(List<String> calls, String first, String second) {
+        int firstIndex = calls.indexOf(first);
+        int secondIndex = calls.indexOf(second);
+        assertTrue(firstIndex >= 0 && firstIndex < secondIndex, () -> first + " must be called before " + second + ": " + calls);
+    }
+
+    private static EntrypointDeclaration entrypoint(String method, boolean mainThread, String... requires) {
+        return new EntrypointDeclaration(Entrypoints.class.getName() + "::" + method, requires, null, mainThread);
+    }
+
+    private static ModImpl mod(String id, EntrypointDeclaration... entrypoints) {
+        ModConfigImpl config = new ModConfigImpl(id, null);
+        for (EntrypointDeclaration entrypoint : entrypoints) {
+            config.addEntrypoint(entrypoint);
+        }
+
+        ModImpl mod = new ModImpl(id, null, null, config);
+        for (EntrypointContainer entrypoint : mod.getEntrypoints()) {
+            assertTrue(entrypoint.link(LOADER));
+            mod.addLinkedEntrypoint(entrypoint);
+        }
+        return mod;
+    }
+
+    public static class Entrypoints {
+        static final List<String> CALLS = Collections.synchronizedList(new ArrayList<>());
+        static final Map<String, Thread> THREADS = Collections.synchronizedMap(new HashMap<>());
+        static volatile ClassLoader CONTEXT;
+
+        private static void record(String name) {
+            CALLS.add(name);
+            THREADS.put(name, Thread.currentThread());
+        }
+
+        public static void a1() {
+            record("a1");
+        }
+
+        public static void a2() {
+            record("a2");
+        }
+
+        public static void b1() {
+            record("b1");
+        }
+
+        public static void b2() {
+            record("b2");
+        }
+
+        public static void c1() {
+            record("c1");
+        }
+
+        public static void d1() {
+            record("d1");
+        }
+
+        public static void context() {
+            CONTEXT = Thread.currentThread().getContextClassLoader();
+        }
+
+        public static void fail() {
+            record("fail");
+            throw new IllegalStateException("Entrypoint failed");
+        }
+    }
+}
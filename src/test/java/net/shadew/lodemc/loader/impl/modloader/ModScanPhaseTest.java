@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.modloader;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.shadew.lodemc.loader.api.LoaderException;
+import net.shadew.lodemc.loader.impl.PhaseStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModScanPhaseTest {
+    private static final String MARKED = "Lcom/example/Marked;";
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void disableCache() {
+        System.setProperty("lode.cache.disable", "true");
+    }
+
+    @AfterAll
+    static void enableCache() {
+        System.clearProperty("lode.cache.disable");
+    }
+
+    @Test
+    void malformedClassIsAProblemOfItsMod() throws IOException {
+        ModImpl good = mod("good", "com/example/Good");
+        ModImpl bad = mod("bad", "com/example/Fine");
+        byte[] truncated = Arrays.copyOf(markedClass("com/example/Broken"), 40);
+        Files.write(dir.resolve("bad/com/example/Broken.class"), truncated);
+
+        ModScanPhase phase = new ModScanPhase(Arrays.asList(good, bad), Collections.singleton(MARKED));
+        phase.run(null);
+
+        assertEquals(PhaseStatus.FATAL, phase.status());
+        assertEquals(Collections.singleton("bad"), phase.problems().keySet());
+        List<LoaderException> problems = phase.problems().get("bad");
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).isCritical());
+
+        assertEquals(1, good.getAnnotatedElements().size());
+        assertTrue(bad.getAnnotatedElements().isEmpty());
+    }
+
+    private ModImpl mod(String id, String cls) throws IOException {
+        Path root = dir.resolve(id);
+        Path file = root.resolve(cls + ".class");
+        Files.createDirectories(file.getParent());
+        Files.write(file, markedClass(cls));
+        return new ModImpl(id, null, root, new ModConfigImpl(id, null));
+    }
+
+    private static byte[] markedClass(String name) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        writer.visitAnnotation(MARKED, false).visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Shadew
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.shadew.lodemc.loader.impl.pluginloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import net.shadew.lodemc.loader.api.LoaderException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginOrderTest {
+    @Test
+    void unconstrainedPluginsShareOneLevelInDiscoveryOrder() {
+        List<PluginInfo> infos = Arrays.asList(plugin("c"), plugin("a"), plugin("b"));
+
+        assertEquals(levels(Arrays.asList("c", "a", "b")), PluginOrder.levels(infos, ids(infos)));
+    }
+
+    @Test
+    void afterAndBeforeConstraintsSplitLevels() {
+        PluginInfo a = plugin("a");
+        PluginInfo b = plugin("b");
+        PluginInfo c = plugin("c");
+        PluginInfo d = plugin("d");
+        b.addAfter("a");
+        c.addBefore("a");
+        d.addAfter("c");
+        List<PluginInfo> infos = Arrays.asList(a, b, c, d);
+
+        assertEquals(
+            levels(Arrays.asList("c"), Arrays.asList("a", "d"), Arrays.asList("b")),
+            PluginOrder.levels(infos, ids(infos))
+        );
+    }
+
+    @Test
+    void ignoresConstraintsOnAbsentPlugins() {
+        PluginInfo a = plugin("a");
+        PluginInfo b = plugin("b");
+        PluginInfo c = plugin("c");
+        a.addAfter("missing");
+        b.addBefore("missing");
+        b.addAfter("c");
+        List<PluginInfo> infos = Arrays.asList(a, b, c);
+
+        // Plugin c was found but not loaded, so it doesn't count either
+        Set<String> loaded = new HashSet<>(Arrays.asList("a", "b"));
+        assertEquals(levels(Arrays.asList("a", "b")), PluginOrder.levels(infos, loaded));
+    }
+
+    @Test
+    void ignoresSelfReferences() {
+        PluginInfo a = plugin("a");
+        a.addAfter("a");
+        a.addBefore("a");
+        List<PluginInfo> infos = Collections.singletonList(a);
+
+        assertEquals(levels(Arrays.asList("a")), PluginOrder.levels(infos, ids(infos)));
+    }
+
+    @Test
+    void rejectsCycles() {
+        PluginInfo a = plugin("a");
+        PluginInfo b = plugin("b");
+        PluginInfo c = plugin("c");
+        PluginInfo d = plugin("d");
+        a.addAfter("b");
+        b.addAfter("c");
+        c.addBefore("b");
+        c.addAfter("a");
+        List<PluginInfo> infos = Arrays.asList(d, a, b, c);
+
+        LoaderException exc = assertThrows(LoaderException.class, () -> PluginOrder.levels(infos, ids(infos)));
+        assertTrue(exc.isCritical());
+        assertEquals("Plugins a, b, c have cyclic ordering constraints", exc.getMessage());
+    }
+
+    @Test
+    void noPluginsHaveNoLevels() {
+        assertTrue(PluginOrder.levels(Collections.emptyList(), Collections.emptySet()).isEmpty());
+    }
+
+    private static PluginInfo plugin(String id) {
+        return new PluginInfo(id, "com.example." + id);
+    }
+
+    private static Set<String> ids(List<PluginInfo> infos) {
+        Set<String> ids = new HashSet<>();
+        infos.forEach(info -> ids.add(info.getPluginId()));
+        return ids;
+    }
+
+    @SafeVarargs
+    private static List<List<String>> levels(List<String>... levels) {
+        return Arrays.asList(levels);
+    }
+}